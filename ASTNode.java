@@ -0,0 +1,2 @@
+// AST Nodes
+abstract class ASTNode {}
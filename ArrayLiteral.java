@@ -0,0 +1,10 @@
+import java.util.*;
+
+// [a, b, ...] node
+class ArrayLiteral extends ASTNode {
+    List<ASTNode> elements;
+
+    ArrayLiteral(List<ASTNode> elements) {
+        this.elements = elements;
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+// Compiles and runs many Phae scripts in one JVM, spread over a work-stealing
+// pool. Every script gets its own Program and Interpreter, and its output is
+// captured separately: printed in input order, or written to <out>/<path>.out,
+// where path is the script's path below the deepest directory holding them all.
+// Usage: java BatchRunner <directory|manifest> [--threads=N] [--out=directory] [--cache=directory]
+// A manifest is a text file listing one script path per line. Compiled
+// programs are cached in memory, and on disk when --cache is given.
+public class BatchRunner {
+    private static final long CACHE_BYTES = 64L << 20;
+
+    // Outcome of one script
+    static final class Result {
+        final Path script;
+        final byte[] output;
+        final String error;
+        final long nanos;
+
+        Result(Path script, byte[] output, String error, long nanos) {
+            this.script = script;
+            this.output = output;
+            this.error = error;
+            this.nanos = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path source = null;
+        Path outDir = null;
+        Path cacheDir = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                String value = arg.substring("--threads=".length());
+                threads = value.matches("[0-9]{1,9}") ? Integer.parseInt(value) : 0;
+                if (threads < 1) {
+                    System.err.println("Invalid option: " + arg + " (the thread count must be a whole number from 1 to 999999999)");
+                    System.exit(1);
+                }
+            } else if (arg.startsWith("--cache=")) {
+                cacheDir = Path.of(arg.substring("--cache=".length()));
+            } else if (arg.startsWith("--out=")) {
+                outDir = Path.of(arg.substring("--out=".length()));
+            } else if (source == null) {
+                source = Path.of(arg);
+            } else {
+                System.err.println("Unknown option: " + arg);
+                return;
+            }
+        }
+        if (source == null) {
+            System.err.println("Usage: java BatchRunner <directory|manifest> [--threads=N] [--out=directory] [--cache=directory]");
+            return;
+        }
+
+        List<Path> scripts = scripts(source);
+        ProgramCache cache = new ProgramCache(cacheDir, CACHE_BYTES);
+        long start = System.nanoTime();
+        List<Result> results = runAll(scripts, threads, cache);
+        long wall = System.nanoTime() - start;
+
+        OutputStream stdout = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        List<Path> outputs = outDir != null ? outputPaths(scripts, outDir) : null;
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            byte[] output = result.output;
+            if (result.error != null) {
+                failed++;
+                output = concat(output, ("Error: " + result.error + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            if (outputs != null) {
+                Files.createDirectories(outputs.get(i).getParent());
+                Files.write(outputs.get(i), output);
+            } else {
+                stdout.write(("== " + result.script + " ==\n").getBytes(StandardCharsets.UTF_8));
+                stdout.write(output);
+            }
+        }
+        stdout.flush();
+
+        System.err.print(summary(results, failed, wall, threads));
+        System.err.println(cache.stats());
+    }
+
+    // The .phae files in a directory, sorted by name, or the paths listed in
+    // a manifest, resolved against the manifest's directory
+    static List<Path> scripts(Path source) throws IOException {
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                return files.filter(path -> path.toString().endsWith(".phae")).sorted().collect(Collectors.toList());
+            }
+        }
+        Path base = source.toAbsolutePath().getParent();
+        List<Path> scripts = new ArrayList<>();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                scripts.add(base.resolve(line));
+            }
+        }
+        return scripts;
+    }
+
+    // The output file of each script: its path below the deepest directory
+    // that holds every script, under outDir, so a/x.phae and b/x.phae in one
+    // manifest do not overwrite each other
+    static List<Path> outputPaths(List<Path> scripts, Path outDir) {
+        List<Path> absolute = new ArrayList<>(scripts.size());
+        Path common = null;
+        for (Path script : scripts) {
+            Path path = script.toAbsolutePath().normalize();
+            absolute.add(path);
+            Path dir = path.getParent();
+            if (common == null) {
+                common = dir;
+            }
+            while (!dir.startsWith(common)) {
+                common = common.getParent();
+            }
+        }
+        List<Path> outputs = new ArrayList<>(scripts.size());
+        for (Path path : absolute) {
+            outputs.add(outDir.resolve(common.relativize(path) + ".out"));
+        }
+        return outputs;
+    }
+
+    // Results come back in the order of the scripts
+    static List<Result> runAll(List<Path> scripts, int threads, ProgramCache cache) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>(scripts.size());
+            for (Path script : scripts) {
+                tasks.add(pool.submit(() -> run(script, cache)));
+            }
+            List<Result> results = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<Result> task : tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    static Result run(Path script, ProgramCache cache) {
+        long start = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink out = new BufferedOutputSink(bytes, BufferedOutputSink.DEFAULT_FLUSH_SIZE, StandardCharsets.UTF_8);
+        String error = null;
+        try {
+            String source = Files.readString(script, StandardCharsets.UTF_8);
+            // Batch scripts have nobody to answer input statements
+            cache.get(source).run(Map.of(), InputSource.of(Map.of()), out);
+        } catch (IOException e) {
+            error = "cannot read " + script + ": " + e.getMessage();
+        } catch (RuntimeException | StackOverflowError e) {
+            error = e instanceof StackOverflowError ? "Stack overflow" : e.getMessage();
+        }
+        return new Result(script, bytes.toByteArray(), error, System.nanoTime() - start);
+    }
+
+    static String summary(List<Result> results, int failed, long wallNanos, int threads) {
+        long[] latencies = new long[results.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = results.get(i).nanos;
+        }
+        Arrays.sort(latencies);
+        double seconds = wallNanos / 1e9;
+        return String.format("%d scripts (%d failed) in %.3f s on %d threads: %.1f scripts/s, p50 %.3f ms, p99 %.3f ms%n",
+            results.size(), failed, seconds, threads, results.size() / seconds,
+            percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6);
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
@@ -0,0 +1,12 @@
+// binary expression node
+class BinaryExpr extends ASTNode {
+    ASTNode left;
+    Token operator;
+    ASTNode right;
+
+    BinaryExpr(ASTNode left, Token operator, ASTNode right) {
+        this.left = left;
+        this.operator = operator;
+        this.right = right;
+    }
+}
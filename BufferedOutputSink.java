@@ -0,0 +1,173 @@
+import java.io.*;
+import java.nio.charset.Charset;
+
+// Collects output as bytes and writes it to the target in blocks of about
+// flushSize bytes. Ints, and doubles that print as a whole number, are
+// appended digit by digit without building a String.
+final class BufferedOutputSink implements OutputSink {
+    static final int DEFAULT_FLUSH_SIZE = 8192;
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+    private final OutputStream target;
+    private final Charset charset;
+    private final int flushSize;
+    private byte[] buffer;
+    private int count = 0;
+
+    BufferedOutputSink(OutputStream target, int flushSize) {
+        this(target, flushSize, stdoutCharset());
+    }
+
+    BufferedOutputSink(OutputStream target, int flushSize, Charset charset) {
+        if (flushSize <= 0) {
+            throw new IllegalArgumentException("Flush size must be positive: " + flushSize);
+        }
+        this.target = target;
+        this.flushSize = flushSize;
+        this.charset = charset;
+        this.buffer = new byte[Math.max(flushSize, 32)];
+    }
+
+    // The charset System.out itself would have used
+    private static Charset stdoutCharset() {
+        String name = System.getProperty("stdout.encoding", System.getProperty("sun.stdout.encoding"));
+        if (name == null) {
+            return Charset.defaultCharset();
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    public void print(String text) {
+        append(text);
+        if (count >= flushSize) {
+            flush();
+        }
+    }
+
+    public void println(Object value) {
+        if (value instanceof Integer i) {
+            println(i.intValue());
+        } else if (value instanceof Double d) {
+            println(d.doubleValue());
+        } else if (value instanceof Boolean b) {
+            println(b.booleanValue());
+        } else {
+            append(value == null ? null : value.toString());
+            newline();
+        }
+    }
+
+    public void println(int value) {
+        appendInt(value);
+        newline();
+    }
+
+    public void println(double value) {
+        // Whole numbers below 1e7 print as "<digits>.0"; everything else
+        // (fractions, exponents, -0.0, NaN) goes through Double.toString
+        int whole = (int) value;
+        if (whole == value && Math.abs(value) < 1e7 && (whole != 0 || Double.doubleToRawLongBits(value) == 0)) {
+            appendInt(whole);
+            ensure(2);
+            buffer[count++] = '.';
+            buffer[count++] = '0';
+        } else {
+            append(Double.toString(value));
+        }
+        newline();
+    }
+
+    public void println(boolean value) {
+        append(value ? TRUE : FALSE);
+        newline();
+    }
+
+    public void flush() {
+        if (count > 0) {
+            try {
+                target.write(buffer, 0, count);
+                target.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count = 0;
+        }
+    }
+
+    private void newline() {
+        ensure(1);
+        buffer[count++] = '\n';
+        if (count >= flushSize) {
+            flush();
+        }
+    }
+
+    private void append(String text) {
+        if (text == null) {
+            append(NULL);
+            return;
+        }
+        int length = text.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Non-ASCII text is encoded the slow way from here on
+                append(text.substring(i).getBytes(charset));
+                return;
+            }
+            buffer[count++] = (byte) c;
+        }
+    }
+
+    private void append(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    private void appendInt(int value) {
+        ensure(11);
+        if (value == Integer.MIN_VALUE) {
+            append(Integer.toString(value).getBytes(charset));
+            return;
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+        int end = count + digits(value);
+        int at = end;
+        do {
+            buffer[--at] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        count = end;
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    // Makes room for n more bytes, flushing or growing for long lines
+    private void ensure(int n) {
+        if (count + n > buffer.length) {
+            flush();
+            if (n > buffer.length) {
+                buffer = new byte[n];
+            }
+        }
+    }
+}
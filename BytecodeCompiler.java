@@ -0,0 +1,285 @@
+import java.util.*;
+
+// Lowers a resolved AST to Phae bytecode
+class BytecodeCompiler {
+    private int[] code = new int[256];
+    private int size = 0;
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+    private final List<BytecodeFunction> functions = new ArrayList<>();
+    private final Map<String, Integer> nameIndexes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    // Arity of each function declared exactly once, for linking calls
+    private final Map<String, Integer> linkedArity = new HashMap<>();
+
+    // Per-function register allocation
+    private BytecodeFunction current;
+    private int nextRegister;
+    private int nextIntRegister;
+
+    // Nodes must have been through the Resolver
+    BytecodeProgram compile(List<ASTNode> nodes, int globalSlots) {
+        BytecodeFunction main = new BytecodeFunction("<main>", 0);
+        functions.add(main);
+        List<FunctionDecl> pending = new ArrayList<>();
+        List<BytecodeFunction> pendingFunctions = new ArrayList<>();
+
+        // Link calls to functions that are declared once; a redeclared name
+        // may change arity, so its calls keep the run-time check
+        Set<String> redeclared = new HashSet<>();
+        for (ASTNode node : nodes) {
+            if (node instanceof FunctionDecl funcDecl) {
+                if (linkedArity.put(funcDecl.name, funcDecl.parameters.size()) != null) {
+                    redeclared.add(funcDecl.name);
+                }
+            }
+        }
+        linkedArity.keySet().removeAll(redeclared);
+
+        begin(main, globalSlots);
+        for (ASTNode node : nodes) {
+            if (node instanceof FunctionDecl funcDecl) {
+                BytecodeFunction function = new BytecodeFunction(funcDecl.name, funcDecl.parameters.size());
+                functions.add(function);
+                pending.add(funcDecl);
+                pendingFunctions.add(function);
+                emit(Opcode.DEFINE, nameIndex(funcDecl.name), functions.size() - 1);
+            } else {
+                statement(node);
+            }
+        }
+        emit(Opcode.HALT);
+
+        for (int i = 0; i < pending.size(); i++) {
+            FunctionDecl funcDecl = pending.get(i);
+            begin(pendingFunctions.get(i), funcDecl.frameSize);
+            block(funcDecl.body);
+            emit(Opcode.RETURN_NULL);
+        }
+
+        return new BytecodeProgram(Arrays.copyOf(code, size), constants.toArray(),
+                                   functions.toArray(new BytecodeFunction[0]), names.toArray(new String[0]));
+    }
+
+    private void begin(BytecodeFunction function, int frameSize) {
+        current = function;
+        function.entry = size;
+        function.registerCount = frameSize;
+        nextRegister = frameSize;
+        nextIntRegister = 0;
+    }
+
+    private void block(List<ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            statement(node);
+        }
+    }
+
+    private void statement(ASTNode node) {
+        int mark = nextRegister;
+        if (node instanceof PrintStmt printStmt) {
+            emit(Opcode.PRINT, expression(printStmt.expression));
+        } else if (node instanceof IfStmt ifStmt) {
+            int jumpToElse = emitJump(Opcode.JUMP_FALSE, expression(ifStmt.condition));
+            block(ifStmt.thenBranch);
+            int jumpToEnd = emitJump(Opcode.JUMP);
+            patch(jumpToElse);
+            block(ifStmt.elseBranch);
+            patch(jumpToEnd);
+        } else if (node instanceof ForLoop forLoop) {
+            if (forLoop.iterable instanceof RangeExpr rangeExpr) {
+                rangeLoop(forLoop, rangeExpr);
+            } else {
+                throw new RuntimeException("Loops over arrays, dictionaries, lines() and files are only supported by the interpreter engine");
+            }
+        } else if (node instanceof WhileLoop whileLoop) {
+            int top = size;
+            int exit = emitJump(Opcode.JUMP_FALSE, expression(whileLoop.condition));
+            nextRegister = mark;
+            block(whileLoop.body);
+            emit(Opcode.JUMP, top);
+            patch(exit);
+        } else if (node instanceof VarAssign varAssign) {
+            int value = expression(varAssign.expression);
+            if (value != varAssign.slot) {
+                emit(Opcode.MOVE, varAssign.slot, value);
+            }
+        } else if (node instanceof FunctionDecl) {
+            throw new RuntimeException("Functions can only be declared at the top level");
+        } else if (node instanceof FunctionCall funcCall) {
+            call(funcCall);
+        } else if (node instanceof ReturnStmt returnStmt) {
+            if (current == functions.get(0)) {
+                expression(returnStmt.value);
+                emit(Opcode.HALT);
+            } else if (returnStmt.value instanceof FunctionCall funcCall) {
+                // Tail call: the callee reuses this frame
+                int base = arguments(funcCall);
+                emit(Opcode.TAIL_CALL, nameIndex(funcCall.name), base);
+            } else {
+                emit(Opcode.RETURN, expression(returnStmt.value));
+            }
+        } else if (node instanceof InputStmt inputStmt) {
+            emit(Opcode.INPUT, inputStmt.slot, constant(inputStmt.identifier));
+        } else if (node instanceof IndexAssign) {
+            throw new RuntimeException("Arrays and dictionaries are only supported by the interpreter engine");
+        }
+        nextRegister = mark;
+    }
+
+    private void rangeLoop(ForLoop forLoop, RangeExpr rangeExpr) {
+        int index = nextIntRegister;
+        nextIntRegister += 3;
+        current.intRegisterCount = Math.max(current.intRegisterCount, nextIntRegister);
+
+        int mark = nextRegister;
+        emit(Opcode.TO_INT, index, expression(rangeExpr.start));
+        emit(Opcode.TO_INT, index + 1, expression(rangeExpr.end));
+        emit(Opcode.TO_INT, index + 2, expression(rangeExpr.step));
+        nextRegister = mark;
+
+        int top = size;
+        int exit = emitJump(Opcode.FOR_TEST, index);
+        emit(Opcode.FOR_SET, forLoop.slot, index);
+        block(forLoop.body);
+        emit(Opcode.FOR_STEP, index);
+        emit(Opcode.JUMP, top);
+        patch(exit);
+    }
+
+    // Returns the register holding the value
+    private int expression(ASTNode node) {
+        if (node instanceof Literal literal) {
+            int target = temp();
+            emit(Opcode.CONST, target, constant(literal.value));
+            return target;
+        } else if (node instanceof Expression expr) {
+            if (expr.type == TokenType.IDENTIFIER) {
+                if (expr.mayBeUnassigned) {
+                    emit(Opcode.CHECK_ASSIGNED, expr.slot, constant(expr.value));
+                }
+                return expr.slot;
+            }
+            Object value = expr.type == TokenType.STRING ? expr.value : expr.getValue();
+            int target = temp();
+            emit(Opcode.CONST, target, constant(value));
+            return target;
+        } else if (node instanceof BinaryExpr binExpr) {
+            int left = expression(binExpr.left);
+            int right = expression(binExpr.right);
+            int target = temp();
+            emit(binaryOpcode(binExpr.operator.value), target, left, right);
+            return target;
+        } else if (node instanceof FunctionCall funcCall) {
+            return call(funcCall);
+        } else if (node instanceof ArrayLiteral || node instanceof DictLiteral || node instanceof IndexExpr) {
+            throw new RuntimeException("Arrays and dictionaries are only supported by the interpreter engine");
+        }
+        throw new RuntimeException("Could not evaluate node: " + node.getClass().getSimpleName());
+    }
+
+    private int call(FunctionCall funcCall) {
+        int base = arguments(funcCall);
+        int target = temp();
+        emit(Opcode.CALL, target, nameIndex(funcCall.name), base);
+        return target;
+    }
+
+    // Checks the callee, then evaluates the arguments into consecutive
+    // registers; returns the first of them
+    private int arguments(FunctionCall funcCall) {
+        int name = nameIndex(funcCall.name);
+        int argc = funcCall.arguments.size();
+        Integer arity = linkedArity.get(funcCall.name);
+        if (arity != null && arity == argc) {
+            emit(Opcode.CHECK_DEFINED, name);
+        } else {
+            // Fails when reached, unless a redeclaration makes it match
+            emit(Opcode.CHECK_CALL, name, argc);
+        }
+
+        // Arguments go into consecutive registers starting at base
+        int base = nextRegister;
+        nextRegister += argc;
+        touch();
+        for (int i = 0; i < argc; i++) {
+            int value = expression(funcCall.arguments.get(i));
+            if (value != base + i) {
+                emit(Opcode.MOVE, base + i, value);
+            }
+            nextRegister = base + argc;
+        }
+        return base;
+    }
+
+    private static int binaryOpcode(String operator) {
+        switch (operator) {
+            case "+": return Opcode.ADD;
+            case "-": return Opcode.SUB;
+            case "*": return Opcode.MUL;
+            case "/": return Opcode.DIV;
+            case "%": return Opcode.MOD;
+            case "==": return Opcode.EQ;
+            case "!=": return Opcode.NE;
+            case ">": return Opcode.GT;
+            case "<": return Opcode.LT;
+            case ">=": return Opcode.GE;
+            case "<=": return Opcode.LE;
+            default:
+                throw new RuntimeException("Unknown operator: " + operator);
+        }
+    }
+
+    private int temp() {
+        int register = nextRegister++;
+        touch();
+        return register;
+    }
+
+    private void touch() {
+        current.registerCount = Math.max(current.registerCount, nextRegister);
+    }
+
+    private int constant(Object value) {
+        // Keep 1 and 1.0 apart
+        Object key = value.getClass().getSimpleName() + ":" + value;
+        Integer index = constantIndexes.get(key);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    private int nameIndex(String name) {
+        Integer index = nameIndexes.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            nameIndexes.put(name, index);
+        }
+        return index;
+    }
+
+    private void emit(int opcode, int... operands) {
+        if (size + operands.length + 1 > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + operands.length + 1));
+        }
+        code[size++] = opcode;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+    }
+
+    // Emits a jump whose target is the last operand, returns where to patch it
+    private int emitJump(int opcode, int... operands) {
+        int[] withTarget = Arrays.copyOf(operands, operands.length + 1);
+        emit(opcode, withTarget);
+        return size - 1;
+    }
+
+    private void patch(int at) {
+        code[at] = size;
+    }
+}
@@ -0,0 +1,13 @@
+// A compiled function: where its code starts and how big its frame is
+final class BytecodeFunction {
+    final String name;
+    final int arity;
+    int entry;
+    int registerCount;
+    int intRegisterCount;
+
+    BytecodeFunction(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+}
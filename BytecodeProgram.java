@@ -0,0 +1,31 @@
+// Output of the BytecodeCompiler. Function 0 is the top-level code.
+final class BytecodeProgram {
+    final int[] code;
+    final Object[] constants;
+    final BytecodeFunction[] functions;
+    final String[] names;
+
+    BytecodeProgram(int[] code, Object[] constants, BytecodeFunction[] functions, String[] names) {
+        this.code = code;
+        this.constants = constants;
+        this.functions = functions;
+        this.names = names;
+    }
+
+    String disassemble() {
+        StringBuilder out = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += 1 + Opcode.OPERANDS[code[pc]]) {
+            for (BytecodeFunction function : functions) {
+                if (function.entry == pc) {
+                    out.append(function.name).append(":\n");
+                }
+            }
+            out.append(String.format("%5d  %-12s", pc, Opcode.NAMES[code[pc]]));
+            for (int i = 1; i <= Opcode.OPERANDS[code[pc]]; i++) {
+                out.append(' ').append(code[pc + i]);
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
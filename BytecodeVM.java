@@ -0,0 +1,274 @@
+import java.util.*;
+
+// Runs Phae bytecode. Calls push frames on an explicit frame stack instead of
+// recursing on the Java stack. Frames are pooled by depth and their register
+// arrays reused, so a call allocates nothing once the stack has been that
+// deep before. Depth is bounded by maxDepth rather than by the Java stack.
+class BytecodeVM {
+    static final int DEFAULT_MAX_DEPTH = 1_000_000;
+
+    private final BytecodeProgram program;
+    private final OutputSink out;
+    private final int maxDepth;
+
+    BytecodeVM(BytecodeProgram program) {
+        this(program, OutputSink.standard());
+    }
+
+    BytecodeVM(BytecodeProgram program, OutputSink out) {
+        this(program, out, DEFAULT_MAX_DEPTH);
+    }
+
+    BytecodeVM(BytecodeProgram program, OutputSink out, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1: " + maxDepth);
+        }
+        this.program = program;
+        this.out = out;
+        this.maxDepth = maxDepth;
+    }
+
+    private static final class Frame {
+        BytecodeFunction function;
+        Object[] registers = new Object[8];
+        int[] ints = new int[0];
+        int pc;
+        int returnRegister;
+
+        // Sets the frame up for a call of function, with arguments taken from
+        // args[base..]. args may be this frame's own registers (a tail call).
+        void enter(BytecodeFunction function, Object[] args, int base) {
+            Object[] target = registers;
+            if (target.length < function.registerCount) {
+                target = new Object[Math.max(function.registerCount, target.length * 2)];
+            }
+            // Forward copy is safe for a tail call: base is past the arguments
+            int arity = function.arity;
+            for (int i = 0; i < arity; i++) {
+                target[i] = args[base + i];
+            }
+            // Locals start out unassigned; the pooled array may hold an older call's values
+            for (int i = arity; i < function.registerCount; i++) {
+                target[i] = Values.UNASSIGNED;
+            }
+            registers = target;
+            this.function = function;
+            if (ints.length < function.intRegisterCount) {
+                ints = new int[function.intRegisterCount];
+            }
+            pc = function.entry;
+        }
+
+        // Drops references so a pooled frame does not keep values alive
+        void leave() {
+            Object[] target = registers;
+            for (int i = 0; i < function.registerCount; i++) {
+                target[i] = null;
+            }
+        }
+    }
+
+    void run() {
+        try {
+            execute();
+        } finally {
+            out.flush();
+        }
+    }
+
+    private void execute() {
+        final int[] code = program.code;
+        final Object[] constants = program.constants;
+        final BytecodeFunction[] bound = new BytecodeFunction[program.names.length];
+
+        // frames[depth] is the running frame
+        Frame[] frames = new Frame[Math.min(16, maxDepth)];
+        int depth = 0;
+
+        Frame frame = frames[0] = new Frame();
+        frame.enter(program.functions[0], frame.registers, 0);
+        Object[] r = frame.registers;
+        int[] ints = frame.ints;
+        int pc = frame.pc;
+
+        while (true) {
+            switch (code[pc]) {
+                case Opcode.CONST:
+                    r[code[pc + 1]] = constants[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.MOVE:
+                    r[code[pc + 1]] = r[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.ADD:
+                    r[code[pc + 1]] = Values.add(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.SUB:
+                    r[code[pc + 1]] = Values.subtract(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.MUL:
+                    r[code[pc + 1]] = Values.multiply(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.DIV:
+                    r[code[pc + 1]] = Values.divide(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.MOD:
+                    r[code[pc + 1]] = Values.modulo(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.EQ:
+                    r[code[pc + 1]] = Values.equal(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.NE:
+                    r[code[pc + 1]] = !Values.equal(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.GT:
+                    r[code[pc + 1]] = Values.greater(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.LT:
+                    r[code[pc + 1]] = Values.less(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.GE:
+                    r[code[pc + 1]] = Values.greaterOrEqual(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.LE:
+                    r[code[pc + 1]] = Values.lessOrEqual(r[code[pc + 2]], r[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case Opcode.JUMP_FALSE:
+                    pc = Values.isTrue(r[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                    break;
+                case Opcode.TO_INT:
+                    ints[code[pc + 1]] = (int) r[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.FOR_TEST: {
+                    int i = code[pc + 1];
+                    boolean more = ints[i + 2] > 0 ? ints[i] < ints[i + 1] : ints[i] > ints[i + 1];
+                    pc = more ? pc + 3 : code[pc + 2];
+                    break;
+                }
+                case Opcode.FOR_SET:
+                    r[code[pc + 1]] = ints[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.FOR_STEP: {
+                    int i = code[pc + 1];
+                    ints[i] += ints[i + 2];
+                    pc += 2;
+                    break;
+                }
+                case Opcode.PRINT:
+                    out.println(r[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Opcode.INPUT:
+                    r[code[pc + 1]] = input((String) constants[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Opcode.DEFINE:
+                    bound[code[pc + 1]] = program.functions[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.CHECK_CALL: {
+                    BytecodeFunction function = bound[code[pc + 1]];
+                    if (function == null) {
+                        throw new RuntimeException("Undefined function: " + program.names[code[pc + 1]]);
+                    }
+                    int argc = code[pc + 2];
+                    if (argc != function.arity) {
+                        throw new RuntimeException("Expected " + function.arity + " arguments but got " + argc);
+                    }
+                    pc += 3;
+                    break;
+                }
+                case Opcode.CHECK_DEFINED:
+                    if (bound[code[pc + 1]] == null) {
+                        throw new RuntimeException("Undefined function: " + program.names[code[pc + 1]]);
+                    }
+                    pc += 2;
+                    break;
+                case Opcode.CHECK_ASSIGNED:
+                    Values.checkAssigned(r[code[pc + 1]], (String) constants[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Opcode.CALL: {
+                    BytecodeFunction function = bound[code[pc + 2]];
+                    frame.pc = pc + 4;
+                    frame.returnRegister = code[pc + 1];
+                    if (++depth == frames.length) {
+                        frames = grow(frames);
+                    }
+                    Frame callee = frames[depth];
+                    if (callee == null) {
+                        callee = frames[depth] = new Frame();
+                    }
+                    callee.enter(function, r, code[pc + 3]);
+                    frame = callee;
+                    r = frame.registers;
+                    ints = frame.ints;
+                    pc = frame.pc;
+                    break;
+                }
+                case Opcode.TAIL_CALL: {
+                    BytecodeFunction function = bound[code[pc + 1]];
+                    int callerRegisters = frame.function.registerCount;
+                    frame.enter(function, r, code[pc + 2]);
+                    if (callerRegisters > function.registerCount) {
+                        Arrays.fill(frame.registers, function.registerCount, callerRegisters, null);
+                    }
+                    r = frame.registers;
+                    ints = frame.ints;
+                    pc = frame.pc;
+                    break;
+                }
+                case Opcode.RETURN:
+                case Opcode.RETURN_NULL: {
+                    Object value = code[pc] == Opcode.RETURN ? r[code[pc + 1]] : null;
+                    frame.leave();
+                    frame = frames[--depth];
+                    r = frame.registers;
+                    ints = frame.ints;
+                    pc = frame.pc;
+                    r[frame.returnRegister] = value;
+                    break;
+                }
+                case Opcode.HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+    }
+
+    private Frame[] grow(Frame[] frames) {
+        if (frames.length >= maxDepth) {
+            throw new RuntimeException("Stack overflow: call depth exceeds " + maxDepth);
+        }
+        return Arrays.copyOf(frames, (int) Math.min((long) maxDepth, frames.length * 2L));
+    }
+
+    private Object input(String identifier) {
+        String input = InputSource.standard(out).read(identifier);
+
+        // Try to parse input as a number; otherwise, store as a string.
+        try {
+            return Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            return input;
+        }
+    }
+}
@@ -0,0 +1,571 @@
+import java.util.*;
+
+// Closure compiler: links a resolved AST once into a tree of executable nodes,
+// one per AST node and operator. Running the result skips the instanceof chain
+// and the operator string switch that the Interpreter does on every visit.
+class ClosureCompiler {
+    private final Map<String, Integer> functionIndexes = new HashMap<>();
+    private final List<Binary> sites = new ArrayList<>();
+
+    // Nodes must have been through the Resolver
+    ClosureProgram compile(List<ASTNode> nodes, int globalSlots) {
+        Stmt[] body = compileBlock(nodes);
+        return new ClosureProgram(body, globalSlots, functionIndexes.size(), sites);
+    }
+
+    private Stmt[] compileBlock(List<ASTNode> nodes) {
+        Stmt[] stmts = new Stmt[nodes.size()];
+        for (int i = 0; i < stmts.length; i++) {
+            stmts[i] = compileStmt(nodes.get(i));
+        }
+        return stmts;
+    }
+
+    private Stmt compileStmt(ASTNode node) {
+        if (node instanceof PrintStmt printStmt) {
+            return new Print(compileExpr(printStmt.expression));
+        } else if (node instanceof IfStmt ifStmt) {
+            return new If(compileExpr(ifStmt.condition), compileBlock(ifStmt.thenBranch), compileBlock(ifStmt.elseBranch));
+        } else if (node instanceof ForLoop forLoop) {
+            if (forLoop.iterable instanceof RangeExpr rangeExpr) {
+                return new ForRange(forLoop.slot, compileExpr(rangeExpr.start), compileExpr(rangeExpr.end),
+                                    compileExpr(rangeExpr.step), compileBlock(forLoop.body));
+            }
+            throw new RuntimeException("Loops over arrays, dictionaries, lines() and files are only supported by the interpreter engine");
+        } else if (node instanceof WhileLoop whileLoop) {
+            return new While(compileExpr(whileLoop.condition), compileBlock(whileLoop.body));
+        } else if (node instanceof VarAssign varAssign) {
+            return new Assign(varAssign.slot, compileExpr(varAssign.expression));
+        } else if (node instanceof FunctionDecl funcDecl) {
+            ClosureFunction function = new ClosureFunction(funcDecl.name, funcDecl.parameters.size(), funcDecl.frameSize);
+            int index = functionIndex(funcDecl.name);
+            function.body = compileBlock(funcDecl.body);
+            return new Define(index, function);
+        } else if (node instanceof FunctionCall funcCall) {
+            return new CallStmt(compileCall(funcCall));
+        } else if (node instanceof ReturnStmt returnStmt) {
+            return new Return(compileExpr(returnStmt.value));
+        } else if (node instanceof InputStmt inputStmt) {
+            return new Input(inputStmt.slot, inputStmt.identifier);
+        } else if (node instanceof IndexAssign) {
+            throw new RuntimeException("Arrays and dictionaries are only supported by the interpreter engine");
+        }
+        return new Block(new Stmt[0]);
+    }
+
+    private Expr compileExpr(ASTNode node) {
+        if (node instanceof Literal literal) {
+            return new Constant(literal.value);
+        } else if (node instanceof Expression expr) {
+            if (expr.type == TokenType.NUMBER) {
+                return new Constant(Integer.parseInt(expr.value));
+            } else if (expr.type == TokenType.FLOAT) {
+                return new Constant(Double.parseDouble(expr.value));
+            } else if (expr.type == TokenType.STRING) {
+                return new Constant(expr.value);
+            } else if (expr.type == TokenType.IDENTIFIER) {
+                return expr.mayBeUnassigned ? new CheckedLocal(expr.slot, expr.value) : new Local(expr.slot);
+            }
+        } else if (node instanceof BinaryExpr binExpr) {
+            Expr left = compileExpr(binExpr.left);
+            Expr right = compileExpr(binExpr.right);
+            Binary site;
+            switch (binExpr.operator.value) {
+                case "+": site = new Add(left, right); break;
+                case "-": site = new Subtract(left, right); break;
+                case "*": site = new Multiply(left, right); break;
+                case "/": site = new Divide(left, right); break;
+                case "%": site = new Modulo(left, right); break;
+                case "==": site = new Equal(left, right); break;
+                case "!=": site = new NotEqual(left, right); break;
+                case ">": site = new Greater(left, right); break;
+                case "<": site = new Less(left, right); break;
+                case ">=": site = new GreaterOrEqual(left, right); break;
+                case "<=": site = new LessOrEqual(left, right); break;
+                default:
+                    throw new RuntimeException("Unknown operator: " + binExpr.operator.value);
+            }
+            sites.add(site);
+            return site;
+        } else if (node instanceof FunctionCall funcCall) {
+            return compileCall(funcCall);
+        } else if (node instanceof ArrayLiteral || node instanceof DictLiteral || node instanceof IndexExpr) {
+            throw new RuntimeException("Arrays and dictionaries are only supported by the interpreter engine");
+        }
+        throw new RuntimeException("Could not evaluate node: " + node.getClass().getSimpleName());
+    }
+
+    private Call compileCall(FunctionCall funcCall) {
+        Expr[] arguments = new Expr[funcCall.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compileExpr(funcCall.arguments.get(i));
+        }
+        return new Call(funcCall.name, functionIndex(funcCall.name), arguments);
+    }
+
+    private int functionIndex(String name) {
+        return functionIndexes.computeIfAbsent(name, n -> functionIndexes.size());
+    }
+
+    // Execution nodes
+
+    abstract static class Expr {
+        abstract Object eval(ClosureFrame frame);
+    }
+
+    // Returns true when a return statement was executed
+    abstract static class Stmt {
+        abstract boolean exec(ClosureFrame frame);
+    }
+
+    static final class Constant extends Expr {
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        Object eval(ClosureFrame frame) {
+            return value;
+        }
+    }
+
+    static final class Local extends Expr {
+        private final int slot;
+
+        Local(int slot) {
+            this.slot = slot;
+        }
+
+        Object eval(ClosureFrame frame) {
+            return frame.slots[slot];
+        }
+    }
+
+    // A read the Resolver marked, which may find the slot unassigned
+    static final class CheckedLocal extends Expr {
+        private final int slot;
+        private final String name;
+
+        CheckedLocal(int slot, String name) {
+            this.slot = slot;
+            this.name = name;
+        }
+
+        Object eval(ClosureFrame frame) {
+            return Values.checkAssigned(frame.slots[slot], name);
+        }
+    }
+
+    // Operator node with an inline type cache. On first execution it
+    // specializes itself for the operand types it sees (int-int,
+    // double-double or mixed numbers); when a later evaluation misses the
+    // cache it rewrites itself to a more general state, ending at generic.
+    abstract static class Binary extends Expr {
+        static final int UNINITIALIZED = 0;
+        static final int INT_INT = 1;
+        static final int DOUBLE_DOUBLE = 2;
+        static final int MIXED = 3;
+        static final int GENERIC = 4;
+
+        final Expr left;
+        final Expr right;
+        int state = UNINITIALIZED;
+        int rewrites = 0;
+
+        Binary(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        abstract Object ints(int left, int right);
+
+        abstract Object doubles(double left, double right);
+
+        abstract Object generic(Object left, Object right);
+
+        final Object eval(ClosureFrame frame) {
+            Object l = left.eval(frame);
+            Object r = right.eval(frame);
+            switch (state) {
+                case INT_INT:
+                    if (l instanceof Integer a && r instanceof Integer b) return ints(a, b);
+                    break;
+                case DOUBLE_DOUBLE:
+                    if (l instanceof Double a && r instanceof Double b) return doubles(a, b);
+                    break;
+                case MIXED:
+                    if (isNumber(l) && isNumber(r)) return numbers(l, r);
+                    break;
+                case GENERIC:
+                    return generic(l, r);
+            }
+            return specialize(l, r);
+        }
+
+        private Object specialize(Object l, Object r) {
+            int next;
+            if (!isNumber(l) || !isNumber(r)) {
+                next = GENERIC;
+            } else if (state == UNINITIALIZED && l instanceof Integer && r instanceof Integer) {
+                next = INT_INT;
+            } else if (state == UNINITIALIZED && l instanceof Double && r instanceof Double) {
+                next = DOUBLE_DOUBLE;
+            } else {
+                next = MIXED;
+            }
+            if (state != UNINITIALIZED) {
+                rewrites++;
+            }
+            state = next;
+            return next == GENERIC ? generic(l, r) : numbers(l, r);
+        }
+
+        // Any mix of Integer and Double; two ints keep int semantics
+        private Object numbers(Object l, Object r) {
+            if (l instanceof Integer a && r instanceof Integer b) {
+                return ints(a, b);
+            }
+            return doubles(((Number) l).doubleValue(), ((Number) r).doubleValue());
+        }
+
+        private static boolean isNumber(Object value) {
+            return value instanceof Integer || value instanceof Double;
+        }
+    }
+
+    static final class Add extends Binary {
+        Add(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return (double) (left + right); }
+
+        Object doubles(double left, double right) { return left + right; }
+
+        Object generic(Object left, Object right) { return Values.add(left, right); }
+    }
+
+    static final class Subtract extends Binary {
+        Subtract(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return (double) (left - right); }
+
+        Object doubles(double left, double right) { return left - right; }
+
+        Object generic(Object left, Object right) { return Values.subtract(left, right); }
+    }
+
+    static final class Multiply extends Binary {
+        Multiply(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return (double) (left * right); }
+
+        Object doubles(double left, double right) { return left * right; }
+
+        Object generic(Object left, Object right) { return Values.multiply(left, right); }
+    }
+
+    static final class Divide extends Binary {
+        Divide(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) {
+            if (right == 0) throw new RuntimeException("Division by zero");
+            return (double) (left / right);
+        }
+
+        Object doubles(double left, double right) {
+            if (right == 0.0) throw new RuntimeException("Division by zero");
+            return left / right;
+        }
+
+        Object generic(Object left, Object right) { return Values.divide(left, right); }
+    }
+
+    static final class Modulo extends Binary {
+        Modulo(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return left % right; }
+
+        Object doubles(double left, double right) {
+            throw new RuntimeException("Modulo operator is not supported for floating-point numbers");
+        }
+
+        Object generic(Object left, Object right) { return Values.modulo(left, right); }
+    }
+
+    static final class Equal extends Binary {
+        Equal(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return left == right; }
+
+        Object doubles(double left, double right) { return sameDouble(left, right); }
+
+        Object generic(Object left, Object right) { return Values.equal(left, right); }
+    }
+
+    static final class NotEqual extends Binary {
+        NotEqual(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return left != right; }
+
+        Object doubles(double left, double right) { return !sameDouble(left, right); }
+
+        Object generic(Object left, Object right) { return !Values.equal(left, right); }
+    }
+
+    static final class Greater extends Binary {
+        Greater(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return left > right; }
+
+        Object doubles(double left, double right) { return left > right; }
+
+        Object generic(Object left, Object right) { return Values.greater(left, right); }
+    }
+
+    static final class Less extends Binary {
+        Less(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return left < right; }
+
+        Object doubles(double left, double right) { return left < right; }
+
+        Object generic(Object left, Object right) { return Values.less(left, right); }
+    }
+
+    static final class GreaterOrEqual extends Binary {
+        GreaterOrEqual(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return left >= right; }
+
+        Object doubles(double left, double right) { return left >= right; }
+
+        Object generic(Object left, Object right) { return Values.greaterOrEqual(left, right); }
+    }
+
+    static final class LessOrEqual extends Binary {
+        LessOrEqual(Expr left, Expr right) { super(left, right); }
+
+        Object ints(int left, int right) { return left <= right; }
+
+        Object doubles(double left, double right) { return left <= right; }
+
+        Object generic(Object left, Object right) { return Values.lessOrEqual(left, right); }
+    }
+
+    // Double.equals semantics, which Values.equal uses for boxed doubles
+    static boolean sameDouble(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    static final class Call extends Expr {
+        private final String name;
+        private final int index;
+        private final Expr[] arguments;
+
+        Call(String name, int index, Expr[] arguments) {
+            this.name = name;
+            this.index = index;
+            this.arguments = arguments;
+        }
+
+        Object eval(ClosureFrame frame) {
+            ClosureFunction function = frame.context.functions[index];
+            if (function == null) {
+                throw new RuntimeException("Undefined function: " + name);
+            }
+            if (arguments.length != function.arity) {
+                throw new RuntimeException("Expected " + function.arity +
+                                          " arguments but got " + arguments.length);
+            }
+
+            Object[] slots = Values.newFrame(function.frameSize);
+            for (int i = 0; i < arguments.length; i++) {
+                slots[i] = arguments[i].eval(frame);
+            }
+
+            ClosureFrame callee = new ClosureFrame(slots, frame.context);
+            for (Stmt stmt : function.body) {
+                if (stmt.exec(callee)) {
+                    return frame.context.returnValue;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final class Block extends Stmt {
+        private final Stmt[] body;
+
+        Block(Stmt[] body) {
+            this.body = body;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            for (Stmt stmt : body) {
+                if (stmt.exec(frame)) return true;
+            }
+            return false;
+        }
+    }
+
+    static final class Print extends Stmt {
+        private final Expr expression;
+
+        Print(Expr expression) {
+            this.expression = expression;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            frame.context.out.println(expression.eval(frame));
+            return false;
+        }
+    }
+
+    static final class If extends Stmt {
+        private final Expr condition;
+        private final Stmt[] thenBranch;
+        private final Stmt[] elseBranch;
+
+        If(Expr condition, Stmt[] thenBranch, Stmt[] elseBranch) {
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            Stmt[] branch = Values.isTrue(condition.eval(frame)) ? thenBranch : elseBranch;
+            for (Stmt stmt : branch) {
+                if (stmt.exec(frame)) return true;
+            }
+            return false;
+        }
+    }
+
+    static final class ForRange extends Stmt {
+        private final int slot;
+        private final Expr start;
+        private final Expr end;
+        private final Expr step;
+        private final Stmt[] body;
+
+        ForRange(int slot, Expr start, Expr end, Expr step, Stmt[] body) {
+            this.slot = slot;
+            this.start = start;
+            this.end = end;
+            this.step = step;
+            this.body = body;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            int from = (int) start.eval(frame);
+            int to = (int) end.eval(frame);
+            int by = (int) step.eval(frame);
+            Object[] slots = frame.slots;
+
+            for (int i = from; (by > 0) ? i < to : i > to; i += by) {
+                slots[slot] = i;
+                for (Stmt stmt : body) {
+                    if (stmt.exec(frame)) return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class While extends Stmt {
+        private final Expr condition;
+        private final Stmt[] body;
+
+        While(Expr condition, Stmt[] body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            while (Values.isTrue(condition.eval(frame))) {
+                for (Stmt stmt : body) {
+                    if (stmt.exec(frame)) return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class Assign extends Stmt {
+        private final int slot;
+        private final Expr expression;
+
+        Assign(int slot, Expr expression) {
+            this.slot = slot;
+            this.expression = expression;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            frame.slots[slot] = expression.eval(frame);
+            return false;
+        }
+    }
+
+    static final class Define extends Stmt {
+        private final int index;
+        private final ClosureFunction function;
+
+        Define(int index, ClosureFunction function) {
+            this.index = index;
+            this.function = function;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            frame.context.functions[index] = function;
+            return false;
+        }
+    }
+
+    static final class CallStmt extends Stmt {
+        private final Call call;
+
+        CallStmt(Call call) {
+            this.call = call;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            call.eval(frame);
+            return false;
+        }
+    }
+
+    static final class Return extends Stmt {
+        private final Expr value;
+
+        Return(Expr value) {
+            this.value = value;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            frame.context.returnValue = value.eval(frame);
+            return true;
+        }
+    }
+
+    static final class Input extends Stmt {
+        private final int slot;
+        private final String identifier;
+
+        Input(int slot, String identifier) {
+            this.slot = slot;
+            this.identifier = identifier;
+        }
+
+        boolean exec(ClosureFrame frame) {
+            String input = InputSource.standard(frame.context.out).read(identifier);
+
+            // Try to parse input as a number; otherwise, store as a string.
+            try {
+                frame.slots[slot] = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                frame.slots[slot] = input;
+            }
+            return false;
+        }
+    }
+}
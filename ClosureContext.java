@@ -0,0 +1,11 @@
+// Per-run state shared by all frames of one execution
+final class ClosureContext {
+    final ClosureFunction[] functions;
+    final OutputSink out;
+    Object returnValue;
+
+    ClosureContext(int functionCount, OutputSink out) {
+        this.functions = new ClosureFunction[functionCount];
+        this.out = out;
+    }
+}
@@ -0,0 +1,9 @@
+final class ClosureFrame {
+    final Object[] slots;
+    final ClosureContext context;
+
+    ClosureFrame(Object[] slots, ClosureContext context) {
+        this.slots = slots;
+        this.context = context;
+    }
+}
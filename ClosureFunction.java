@@ -0,0 +1,13 @@
+// A function linked by the ClosureCompiler
+final class ClosureFunction {
+    final String name;
+    final int arity;
+    final int frameSize;
+    ClosureCompiler.Stmt[] body;
+
+    ClosureFunction(String name, int arity, int frameSize) {
+        this.name = name;
+        this.arity = arity;
+        this.frameSize = frameSize;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.*;
+
+// Result of the ClosureCompiler, can be run any number of times
+final class ClosureProgram {
+    private final ClosureCompiler.Stmt[] body;
+    private final int globalSlots;
+    private final int functionCount;
+    private final List<ClosureCompiler.Binary> sites;
+
+    ClosureProgram(ClosureCompiler.Stmt[] body, int globalSlots, int functionCount, List<ClosureCompiler.Binary> sites) {
+        this.body = body;
+        this.globalSlots = globalSlots;
+        this.functionCount = functionCount;
+        this.sites = sites;
+    }
+
+    void run() {
+        run(OutputSink.standard());
+    }
+
+    void run(OutputSink out) {
+        ClosureFrame globals = new ClosureFrame(Values.newFrame(globalSlots), new ClosureContext(functionCount, out));
+        try {
+            for (ClosureCompiler.Stmt stmt : body) {
+                if (stmt.exec(globals)) {
+                    break;
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    // Summary of the operator type caches, e.g. after a run
+    String siteReport() {
+        int[] byState = new int[5];
+        int executed = 0;
+        int monomorphic = 0;
+        for (ClosureCompiler.Binary site : sites) {
+            byState[site.state]++;
+            if (site.state != ClosureCompiler.Binary.UNINITIALIZED) {
+                executed++;
+                if (site.rewrites == 0) monomorphic++;
+            }
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append("Operator sites: ").append(sites.size()).append(" total, ")
+              .append(executed).append(" executed\n");
+        report.append(String.format("  %-14s %d%n", "int-int", byState[ClosureCompiler.Binary.INT_INT]));
+        report.append(String.format("  %-14s %d%n", "double-double", byState[ClosureCompiler.Binary.DOUBLE_DOUBLE]));
+        report.append(String.format("  %-14s %d%n", "mixed", byState[ClosureCompiler.Binary.MIXED]));
+        report.append(String.format("  %-14s %d%n", "generic", byState[ClosureCompiler.Binary.GENERIC]));
+        report.append(String.format("  %-14s %d%n", "never run", byState[ClosureCompiler.Binary.UNINITIALIZED]));
+        report.append("Monomorphic: ").append(monomorphic).append(" of ").append(executed)
+              .append(" executed sites never rewrote\n");
+        return report.toString();
+    }
+}
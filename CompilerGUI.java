@@ -1,12 +1,18 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 public class CompilerGUI extends JFrame {
     private JTextArea codeEditor;
     private JTextArea outputArea;
     private JButton runButton;
+    private JButton stopButton;
+    private JLabel statusLabel;
+    private Timer statusTimer;
+    private RunWorker worker;
 
     public CompilerGUI() {
         // Set up the frame
@@ -35,9 +41,38 @@ public class CompilerGUI extends JFrame {
             }
         });
 
+        // Create the stop button, enabled while a program runs
+        stopButton = new JButton("Stop");
+        stopButton.setEnabled(false);
+        stopButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null) {
+                    worker.stop();
+                }
+            }
+        });
+
+        // Create the status line and the timer that refreshes it during a run
+        statusLabel = new JLabel("Ready");
+        statusTimer = new Timer(200, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (worker != null) {
+                    worker.publishOutput();
+                    statusLabel.setText("Running: " + worker.progress());
+                }
+            }
+        });
+
         // Create panels to organize components
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         buttonPanel.add(runButton);
+        buttonPanel.add(stopButton);
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(statusLabel, BorderLayout.WEST);
+        bottomPanel.add(buttonPanel, BorderLayout.EAST);
 
         // Create a split pane to divide the editor and output areas
         JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, codeScrollPane, outputScrollPane);
@@ -45,47 +80,123 @@ public class CompilerGUI extends JFrame {
 
         // Add components to the frame
         add(splitPane, BorderLayout.CENTER);
-        add(buttonPanel, BorderLayout.SOUTH);
+        add(bottomPanel, BorderLayout.SOUTH);
 
         // Set visible
         setVisible(true);
     }
 
     private void runCode() {
-        try {
-            // Get the code from the editor
-            String code = codeEditor.getText();
-            outputArea.setText(""); // Clear the output
-    
-            // Capture user input before execution
-            String modifiedCode = preprocessInput(code);
-    
-            // Save original System.out and System.in
-            PrintStream originalOut = System.out;
-            InputStream originalIn = System.in;
-    
-            // Create output capture stream
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            PrintStream captureStream = new PrintStream(outputStream);
-            System.setOut(captureStream);
-    
-            // Set System.in with modified code
-            ByteArrayInputStream inputStream = new ByteArrayInputStream((modifiedCode + "\nEND\n").getBytes());
-            System.setIn(inputStream);
-    
-            // Run compiler
-            PhaeCompiler.main(new String[0]);
-    
-            // Restore original System.out and System.in
-            System.setOut(originalOut);
-            System.setIn(originalIn);
-    
-            // Show output
-            outputArea.setText(outputStream.toString().trim());
-    
-        } catch (Exception ex) {
-            outputArea.setText("Error: " + ex.getMessage());
-            ex.printStackTrace();
+        // Get the code from the editor
+        String code = codeEditor.getText();
+        outputArea.setText(""); // Clear the output
+
+        // Capture user input before execution
+        String modifiedCode = preprocessInput(code);
+
+        // Run the program off the event dispatch thread
+        worker = new RunWorker(modifiedCode);
+        runButton.setEnabled(false);
+        stopButton.setEnabled(true);
+        statusLabel.setText("Running");
+        statusTimer.start();
+        worker.execute();
+    }
+
+    private void finished(String status) {
+        statusTimer.stop();
+        statusLabel.setText(status);
+        runButton.setEnabled(true);
+        stopButton.setEnabled(false);
+        worker = null;
+    }
+
+    // Runs one program in the background. Output is published in chunks of
+    // up to CHUNK_SIZE characters, and on every status timer tick so that a
+    // few lines printed before a long computation show up right away. It is
+    // appended to the output area on the event dispatch thread. Input
+    // dialogs have already been answered by preprocessInput, so the program
+    // gets no other input and lines() ends at once instead of reading System.in.
+    private final class RunWorker extends SwingWorker<Void, String> {
+        private static final int CHUNK_SIZE = 4096;
+
+        private final String source;
+        private final Interpreter interpreter;
+        private final StringBuilder chunk = new StringBuilder();
+        private final long startTime = System.nanoTime();
+
+        RunWorker(String source) {
+            this.source = source;
+            this.interpreter = new Interpreter(new OutputSink() {
+                public void print(String text) {
+                    synchronized (chunk) {
+                        chunk.append(text);
+                        if (chunk.length() >= CHUNK_SIZE) {
+                            flush();
+                        }
+                    }
+                }
+
+                public void println(Object value) {
+                    print(value + "\n");
+                }
+
+                public void flush() {
+                    publishOutput();
+                }
+            }, InputSource.of(Map.of()));
+        }
+
+        // Called by the worker and by the status timer
+        void publishOutput() {
+            synchronized (chunk) {
+                if (chunk.length() > 0) {
+                    publish(chunk.toString());
+                    chunk.setLength(0);
+                }
+            }
+        }
+
+        void stop() {
+            interpreter.cancel();
+        }
+
+        String progress() {
+            return String.format("%.1f s, %,d statements",
+                (System.nanoTime() - startTime) / 1e9, interpreter.statementCount());
+        }
+
+        @Override
+        protected Void doInBackground() {
+            List<ASTNode> ast = new Parser(new Lexer(source).tokenizeCompact()).parse();
+            new ConstantMaterializer().materialize(ast);
+            int globalSlots = new Resolver().resolve(ast);
+            interpreter.interpret(ast, globalSlots);
+            return null;
+        }
+
+        @Override
+        protected void process(List<String> chunks) {
+            for (String text : chunks) {
+                outputArea.append(text);
+            }
+        }
+
+        @Override
+        protected void done() {
+            try {
+                get();
+                finished("Finished: " + progress());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    finished("Stopped: " + progress());
+                } else {
+                    outputArea.append("Error: " + e.getCause().getMessage());
+                    finished("Failed: " + progress());
+                }
+            } catch (InterruptedException | CancellationException e) {
+                finished("Stopped: " + progress());
+            }
         }
     }
 
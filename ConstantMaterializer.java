@@ -0,0 +1,69 @@
+import java.util.*;
+
+// Constant materialization: replaces NUMBER/FLOAT/STRING Expression nodes with
+// Literal nodes holding the already boxed value, so evaluating a literal no
+// longer parses its text every time.
+class ConstantMaterializer {
+    void materialize(List<ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            materializeStmt(node);
+        }
+    }
+
+    private void materializeStmt(ASTNode node) {
+        if (node instanceof PrintStmt printStmt) {
+            printStmt.expression = materializeExpr(printStmt.expression);
+        } else if (node instanceof IfStmt ifStmt) {
+            ifStmt.condition = materializeExpr(ifStmt.condition);
+            materialize(ifStmt.thenBranch);
+            materialize(ifStmt.elseBranch);
+        } else if (node instanceof ForLoop forLoop) {
+            forLoop.iterable = materializeExpr(forLoop.iterable);
+            materialize(forLoop.body);
+        } else if (node instanceof WhileLoop whileLoop) {
+            whileLoop.condition = materializeExpr(whileLoop.condition);
+            materialize(whileLoop.body);
+        } else if (node instanceof VarAssign varAssign) {
+            varAssign.expression = materializeExpr(varAssign.expression);
+        } else if (node instanceof FunctionDecl funcDecl) {
+            materialize(funcDecl.body);
+        } else if (node instanceof FunctionCall funcCall) {
+            materializeExpr(funcCall);
+        } else if (node instanceof ReturnStmt returnStmt) {
+            returnStmt.value = materializeExpr(returnStmt.value);
+        } else if (node instanceof IndexAssign indexAssign) {
+            indexAssign.index = materializeExpr(indexAssign.index);
+            indexAssign.expression = materializeExpr(indexAssign.expression);
+        }
+    }
+
+    private ASTNode materializeExpr(ASTNode node) {
+        if (node instanceof Expression expr) {
+            if (expr.type == TokenType.NUMBER) {
+                return new Literal(Integer.parseInt(expr.value));
+            } else if (expr.type == TokenType.FLOAT) {
+                return new Literal(Double.parseDouble(expr.value));
+            } else if (expr.type == TokenType.STRING) {
+                return new Literal(expr.value);
+            }
+        } else if (node instanceof BinaryExpr binExpr) {
+            binExpr.left = materializeExpr(binExpr.left);
+            binExpr.right = materializeExpr(binExpr.right);
+        } else if (node instanceof FunctionCall funcCall) {
+            funcCall.arguments.replaceAll(this::materializeExpr);
+        } else if (node instanceof RangeExpr rangeExpr) {
+            rangeExpr.start = materializeExpr(rangeExpr.start);
+            rangeExpr.end = materializeExpr(rangeExpr.end);
+            rangeExpr.step = materializeExpr(rangeExpr.step);
+        } else if (node instanceof ArrayLiteral array) {
+            array.elements.replaceAll(this::materializeExpr);
+        } else if (node instanceof DictLiteral dict) {
+            dict.keys.replaceAll(this::materializeExpr);
+            dict.values.replaceAll(this::materializeExpr);
+        } else if (node instanceof IndexExpr indexExpr) {
+            indexExpr.array = materializeExpr(indexExpr.array);
+            indexExpr.index = materializeExpr(indexExpr.index);
+        }
+        return node;
+    }
+}
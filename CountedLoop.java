@@ -0,0 +1,208 @@
+import java.util.*;
+
+// Execution plan for a `for x in range(...)`, `for x in array` or int-keyed
+// `for k in dict` loop in the Interpreter, built the first time the loop
+// runs. The plan holds a private copy of the body in which reads of the loop
+// variable are InductionVariable nodes, read from `index` or `element`
+// instead of a boxed frame slot, and arithmetic that does not change inside
+// the loop is wrapped in HoistedExpr nodes, evaluated once per entry to the
+// loop. Parts of the body that need neither share the original nodes. The
+// original AST is never modified, since a Program may be running on other
+// threads.
+final class CountedLoop {
+    final ForLoop loop;
+    final List<ASTNode> body;
+    final boolean mayReturn;       // The body has a return statement somewhere
+    final List<HoistedExpr> hoisted = new ArrayList<>();
+    int index;                     // Current value of the loop variable, unless doubles
+    double element;                // Current value when an array loop is on a double element
+    boolean doubles;
+    boolean active;                // Set while running; a recursive call falls back to the plain loop
+
+    private final Set<Integer> written = new HashSet<>();
+
+    // Null when the body assigns to the loop variable, which the plan cannot model
+    static CountedLoop plan(ForLoop loop) {
+        Set<Integer> written = new HashSet<>();
+        boolean[] mayReturn = new boolean[1];
+        scan(loop.body, written, mayReturn);
+        if (written.contains(loop.slot)) {
+            return null;
+        }
+        return new CountedLoop(loop, written, mayReturn[0]);
+    }
+
+    private CountedLoop(ForLoop loop, Set<Integer> written, boolean mayReturn) {
+        this.loop = loop;
+        this.written.addAll(written);
+        this.mayReturn = mayReturn;
+        this.body = rewriteBlock(loop.body);
+    }
+
+    // Called on every entry to the loop
+    void reset() {
+        for (HoistedExpr expr : hoisted) {
+            expr.ready = false;
+            expr.value = null;
+        }
+    }
+
+    // Frame slots the statements assign, and whether any of them returns
+    private static void scan(List<ASTNode> nodes, Set<Integer> written, boolean[] mayReturn) {
+        for (ASTNode node : nodes) {
+            if (node instanceof VarAssign assign) {
+                written.add(assign.slot);
+            } else if (node instanceof InputStmt input) {
+                written.add(input.slot);
+            } else if (node instanceof IndexAssign assign) {
+                // Reads its slot too, which the plan must not redirect
+                written.add(assign.slot);
+            } else if (node instanceof ForLoop loop) {
+                written.add(loop.slot);
+                scan(loop.body, written, mayReturn);
+            } else if (node instanceof WhileLoop loop) {
+                scan(loop.body, written, mayReturn);
+            } else if (node instanceof IfStmt ifStmt) {
+                scan(ifStmt.thenBranch, written, mayReturn);
+                scan(ifStmt.elseBranch, written, mayReturn);
+            } else if (node instanceof ReturnStmt) {
+                mayReturn[0] = true;
+            }
+        }
+    }
+
+    private List<ASTNode> rewriteBlock(List<ASTNode> nodes) {
+        List<ASTNode> rewritten = new ArrayList<>(nodes.size());
+        boolean changed = false;
+        for (ASTNode node : nodes) {
+            ASTNode copy = rewriteStmt(node);
+            rewritten.add(copy);
+            changed |= copy != node;
+        }
+        return changed ? rewritten : nodes;
+    }
+
+    private ASTNode rewriteStmt(ASTNode node) {
+        if (node instanceof PrintStmt print) {
+            ASTNode expression = rewriteExpr(print.expression);
+            return expression == print.expression ? node : new PrintStmt(expression);
+        } else if (node instanceof VarAssign assign) {
+            ASTNode expression = rewriteExpr(assign.expression);
+            if (expression == assign.expression) {
+                return node;
+            }
+            VarAssign copy = new VarAssign(assign.identifier, expression);
+            copy.slot = assign.slot;
+            return copy;
+        } else if (node instanceof IfStmt ifStmt) {
+            ASTNode condition = rewriteExpr(ifStmt.condition);
+            List<ASTNode> thenBranch = rewriteBlock(ifStmt.thenBranch);
+            List<ASTNode> elseBranch = rewriteBlock(ifStmt.elseBranch);
+            if (condition == ifStmt.condition && thenBranch == ifStmt.thenBranch && elseBranch == ifStmt.elseBranch) {
+                return node;
+            }
+            return new IfStmt(condition, thenBranch, elseBranch);
+        } else if (node instanceof ForLoop inner) {
+            // The inner loop gets its own plan when it runs; only outer reads change here
+            ASTNode iterable = rewriteExpr(inner.iterable);
+            List<ASTNode> innerBody = rewriteBlock(inner.body);
+            if (iterable == inner.iterable && innerBody == inner.body) {
+                return node;
+            }
+            ForLoop copy = new ForLoop(inner.variable, iterable, innerBody);
+            copy.slot = inner.slot;
+            return copy;
+        } else if (node instanceof WhileLoop whileLoop) {
+            // The condition is evaluated on every iteration, so nothing in it is hoisted
+            ASTNode condition = rewriteReads(whileLoop.condition);
+            List<ASTNode> whileBody = rewriteBlock(whileLoop.body);
+            if (condition == whileLoop.condition && whileBody == whileLoop.body) {
+                return node;
+            }
+            return new WhileLoop(condition, whileBody);
+        } else if (node instanceof ReturnStmt ret) {
+            ASTNode value = rewriteExpr(ret.value);
+            return value == ret.value ? node : new ReturnStmt(value);
+        } else if (node instanceof IndexAssign assign) {
+            ASTNode index = rewriteExpr(assign.index);
+            ASTNode expression = rewriteExpr(assign.expression);
+            if (index == assign.index && expression == assign.expression) {
+                return node;
+            }
+            IndexAssign copy = new IndexAssign(assign.identifier, index, expression);
+            copy.slot = assign.slot;
+            return copy;
+        } else if (node instanceof FunctionCall) {
+            return rewriteExpr(node);
+        }
+        return node;
+    }
+
+    // Hoists the largest invariant subexpressions, then replaces loop variable reads
+    private ASTNode rewriteExpr(ASTNode node) {
+        return rewriteExpr(node, true);
+    }
+
+    // Replaces loop variable reads only
+    private ASTNode rewriteReads(ASTNode node) {
+        return rewriteExpr(node, false);
+    }
+
+    private ASTNode rewriteExpr(ASTNode node, boolean hoist) {
+        if (node instanceof Expression expr && expr.type == TokenType.IDENTIFIER && expr.slot == loop.slot) {
+            return new InductionVariable(this);
+        } else if (hoist && node instanceof BinaryExpr && isInvariant(node)) {
+            HoistedExpr expr = new HoistedExpr(rewriteReads(node));
+            hoisted.add(expr);
+            return expr;
+        } else if (node instanceof BinaryExpr binary) {
+            ASTNode left = rewriteExpr(binary.left, hoist);
+            ASTNode right = rewriteExpr(binary.right, hoist);
+            return left == binary.left && right == binary.right ? node : new BinaryExpr(left, binary.operator, right);
+        } else if (node instanceof FunctionCall call) {
+            List<ASTNode> arguments = rewriteAll(call.arguments, hoist);
+            return arguments == call.arguments ? node : new FunctionCall(call.name, arguments);
+        } else if (node instanceof RangeExpr range) {
+            ASTNode start = rewriteExpr(range.start, hoist);
+            ASTNode end = rewriteExpr(range.end, hoist);
+            ASTNode step = rewriteExpr(range.step, hoist);
+            return start == range.start && end == range.end && step == range.step ? node : new RangeExpr(start, end, step);
+        } else if (node instanceof IndexExpr indexExpr) {
+            ASTNode array = rewriteExpr(indexExpr.array, hoist);
+            ASTNode index = rewriteExpr(indexExpr.index, hoist);
+            return array == indexExpr.array && index == indexExpr.index ? node : new IndexExpr(array, index);
+        } else if (node instanceof ArrayLiteral arrayLiteral) {
+            List<ASTNode> elements = rewriteAll(arrayLiteral.elements, hoist);
+            return elements == arrayLiteral.elements ? node : new ArrayLiteral(elements);
+        } else if (node instanceof DictLiteral dictLiteral) {
+            List<ASTNode> keys = rewriteAll(dictLiteral.keys, hoist);
+            List<ASTNode> values = rewriteAll(dictLiteral.values, hoist);
+            return keys == dictLiteral.keys && values == dictLiteral.values ? node : new DictLiteral(keys, values);
+        }
+        return node;
+    }
+
+    private List<ASTNode> rewriteAll(List<ASTNode> nodes, boolean hoist) {
+        List<ASTNode> rewritten = new ArrayList<>(nodes.size());
+        boolean changed = false;
+        for (ASTNode node : nodes) {
+            ASTNode copy = rewriteExpr(node, hoist);
+            rewritten.add(copy);
+            changed |= copy != node;
+        }
+        return changed ? rewritten : nodes;
+    }
+
+    // True for arithmetic on constants, outer loop variables and variables
+    // the body never assigns. Calls are never hoisted.
+    private boolean isInvariant(ASTNode node) {
+        if (node instanceof Literal || node instanceof InductionVariable || node instanceof HoistedExpr) {
+            return true;
+        } else if (node instanceof Expression expr) {
+            return expr.type != TokenType.IDENTIFIER || (expr.slot != loop.slot && !written.contains(expr.slot));
+        } else if (node instanceof BinaryExpr binary) {
+            return isInvariant(binary.left) && isInvariant(binary.right);
+        }
+        return false;
+    }
+}
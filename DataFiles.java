@@ -0,0 +1,284 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// File builtins for scripts, one instance per Interpreter run:
+//   readLines(path)          each line, as an int when it is one, else a string
+//   readColumn(path, index)  the index-th field (from 0) of each line; fields
+//                            are separated by a comma, a tab or a run of
+//                            spaces, numeric ones become ints or doubles and
+//                            empty ones empty strings
+//   writeLine(path, value)   appends value as print() would show it; the file
+//                            is truncated on the first write of a run
+// Files are read lazily through memory-mapped regions, so they are never
+// loaded onto the heap whole. Everything opened is closed by close().
+final class DataFiles implements Closeable {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final List<Closeable> open = new ArrayList<>();
+    private final Map<String, OutputSink> writers = new HashMap<>();
+
+    static boolean isBuiltin(String name) {
+        return name.equals("readLines") || name.equals("readColumn") || name.equals("writeLine");
+    }
+
+    // Arguments are already evaluated
+    Object call(String name, List<Object> arguments) {
+        switch (name) {
+            case "readLines":
+                checkArity(name, arguments, 1);
+                return open(path(arguments.get(0)), -1);
+            case "readColumn": {
+                checkArity(name, arguments, 2);
+                int index = PhaeArray.toIndex(arguments.get(1));
+                if (index < 0) {
+                    throw new RuntimeException("readColumn index must not be negative: " + index);
+                }
+                return open(path(arguments.get(0)), index);
+            }
+            case "writeLine":
+                checkArity(name, arguments, 2);
+                writer(path(arguments.get(0))).println(arguments.get(1));
+                return null;
+            default:
+                throw new RuntimeException("Undefined function: " + name);
+        }
+    }
+
+    public void close() {
+        RuntimeException failure = null;
+        for (OutputSink writer : writers.values()) {
+            try {
+                writer.flush();
+            } catch (RuntimeException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        for (Closeable closeable : open) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                failure = failure == null ? new UncheckedIOException(e) : failure;
+            }
+        }
+        writers.clear();
+        open.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void checkArity(String name, List<Object> arguments, int expected) {
+        if (arguments.size() != expected) {
+            throw new RuntimeException("Expected " + expected + " arguments but got " + arguments.size());
+        }
+    }
+
+    private static String path(Object value) {
+        if (!(Rope.flatten(value) instanceof String path)) {
+            throw new RuntimeException("File name must be a string");
+        }
+        return path;
+    }
+
+    private MappedRecords open(String path, int column) {
+        // Lines this run wrote to the file must be visible to the reader
+        OutputSink writer = writers.get(path);
+        if (writer != null) {
+            writer.flush();
+        }
+        try {
+            MappedRecords records = new MappedRecords(Path.of(path), column);
+            open.add(records);
+            return records;
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("Cannot read " + path + ": no such file");
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + path + ": " + e.getMessage());
+        }
+    }
+
+    private OutputSink writer(String path) {
+        OutputSink writer = writers.get(path);
+        if (writer == null) {
+            try {
+                FileChannel channel = FileChannel.open(Path.of(path),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                open.add(channel);
+                writer = new BufferedOutputSink(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE, StandardCharsets.UTF_8);
+                writers.put(path, writer);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot write " + path + ": " + e.getMessage());
+            }
+        }
+        return writer;
+    }
+}
+
+// Lines, or one field of each line, of a memory-mapped file. The file is
+// mapped one region at a time; a line that crosses the end of a region is
+// read again from the start of the next mapping.
+final class MappedRecords implements Records, Closeable {
+    private static final long REGION_SIZE = 64L << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final int column;  // -1 for whole lines
+    private long regionStart;
+    private MappedByteBuffer region;
+    private byte[] line = new byte[256];
+    private boolean closed = false;
+
+    MappedRecords(Path path, int column) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.column = column;
+        map(0);
+    }
+
+    public Object next() {
+        while (true) {
+            int length = nextLine();
+            if (length < 0) {
+                return null;
+            }
+            if (column < 0) {
+                return LineReader.record(line, 0, length);
+            }
+            Object field = field(length);
+            if (field != null) {
+                return field;
+            }
+            // Lines without that field are skipped
+        }
+    }
+
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            region = null;
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<file " + path + ">";
+    }
+
+    private void map(long start) {
+        try {
+            regionStart = start;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Copies the next line, without its terminator, into line and returns
+    // its length; -1 at the end of the file
+    private int nextLine() {
+        if (closed) {
+            return -1;
+        }
+        while (true) {
+            int start = region.position();
+            int limit = region.limit();
+            int end = start;
+            while (end < limit && region.get(end) != '\n') {
+                end++;
+            }
+            boolean lastRegion = regionStart + limit >= size;
+            if (end == limit && !lastRegion) {
+                if (start == 0) {
+                    throw new RuntimeException("Line longer than " + REGION_SIZE + " bytes in " + path);
+                }
+                map(regionStart + start);
+                continue;
+            }
+            if (end == start && end == limit) {
+                // End of the file, with no unterminated last line
+                try {
+                    close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return -1;
+            }
+            int length = end - start;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            region.get(start, line, 0, length);
+            region.position(end < limit ? end + 1 : end);
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return length;
+        }
+    }
+
+    // The column-th field of the line, or null when the line is shorter. A
+    // comma or a tab ends one field, so "1,,3" has an empty second field;
+    // runs of spaces end one too, and spaces around a comma or tab are padding.
+    private Object field(int length) {
+        int i = skipSpaces(0, length);
+        if (i == length) {
+            return null;  // Blank lines have no fields
+        }
+        for (int index = 0; ; index++) {
+            int start = i;
+            while (i < length && !isSeparator(line[i])) {
+                i++;
+            }
+            int end = i;
+            i = skipSpaces(i, length);
+            boolean delimited = i < length && (line[i] == ',' || line[i] == '\t');
+            if (delimited) {
+                i = skipSpaces(i + 1, length);
+            }
+            if (index == column) {
+                return end == start ? "" : number(start, end - start);
+            }
+            if (i == length && !delimited) {
+                return null;
+            }
+        }
+    }
+
+    private int skipSpaces(int i, int length) {
+        while (i < length && line[i] == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ',' || b == ' ' || b == '\t';
+    }
+
+    // An int, a double or, for anything else, the text
+    private Object number(int start, int length) {
+        Object value = LineReader.record(line, start, length);
+        if (value instanceof String text) {
+            for (int i = start; i < start + length; i++) {
+                byte b = line[i];
+                if (!(b >= '0' && b <= '9' || b == '.' || b == '-' || b == '+' || b == 'e' || b == 'E')) {
+                    return text;
+                }
+            }
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return text;
+            }
+        }
+        return value;
+    }
+}
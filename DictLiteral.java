@@ -0,0 +1,12 @@
+import java.util.*;
+
+// {key: value, ...} node
+class DictLiteral extends ASTNode {
+    List<ASTNode> keys;
+    List<ASTNode> values;
+
+    DictLiteral(List<ASTNode> keys, List<ASTNode> values) {
+        this.keys = keys;
+        this.values = values;
+    }
+}
@@ -0,0 +1,17 @@
+// expression node
+// Expression node (supports int and float)
+class Expression extends ASTNode {
+    String value;
+    TokenType type;
+    int slot = -1;  // Frame slot for IDENTIFIER reads
+    boolean mayBeUnassigned;  // Some path reaches this read without assigning the slot
+
+    Expression(String value, TokenType type) {
+        this.value = value;
+        this.type = type;
+    }
+
+    Object getValue() {
+        return type == TokenType.FLOAT ? Double.parseDouble(value) : Integer.parseInt(value);
+    }
+}
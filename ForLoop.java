@@ -0,0 +1,15 @@
+import java.util.*;
+
+// for loop node
+class ForLoop extends ASTNode {
+    String variable;     // Loop variable name
+    ASTNode iterable;    // What we're iterating over
+    List<ASTNode> body;  // Loop body
+    int slot = -1;       // Frame slot of the loop variable
+
+    ForLoop(String variable, ASTNode iterable, List<ASTNode> body) {
+        this.variable = variable;
+        this.iterable = iterable;
+        this.body = body;
+    }
+}
@@ -0,0 +1,17 @@
+import java.util.*;
+
+// Function data
+class Function {
+    String name;
+    List<String> parameters;
+    List<ASTNode> body;
+    int frameSize;
+    MemoTable memo; // Set when memoization is on and the function is pure
+    
+    Function(String name, List<String> parameters, List<ASTNode> body, int frameSize) {
+        this.name = name;
+        this.parameters = parameters;
+        this.body = body;
+        this.frameSize = frameSize;
+    }
+}
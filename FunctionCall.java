@@ -0,0 +1,12 @@
+import java.util.*;
+
+// Function call node
+class FunctionCall extends ASTNode {
+    String name;
+    List<ASTNode> arguments;
+
+    FunctionCall(String name, List<ASTNode> arguments) {
+        this.name = name;
+        this.arguments = arguments;
+    }
+}
@@ -0,0 +1,15 @@
+import java.util.*;
+
+// Function declaration node
+class FunctionDecl extends ASTNode {
+    String name;
+    List<String> parameters;
+    List<ASTNode> body;
+    int frameSize;       // Filled in by the Resolver
+
+    FunctionDecl(String name, List<String> parameters, List<ASTNode> body) {
+        this.name = name;
+        this.parameters = parameters;
+        this.body = body;
+    }
+}
@@ -0,0 +1,11 @@
+// Loop-invariant expression, evaluated on first use after each loop entry so
+// that errors such as a division by zero surface where they always did
+final class HoistedExpr extends ASTNode {
+    final ASTNode expression;
+    boolean ready;
+    Object value;
+
+    HoistedExpr(ASTNode expression) {
+        this.expression = expression;
+    }
+}
@@ -0,0 +1,14 @@
+import java.util.*;
+
+// if statement node
+class IfStmt extends ASTNode {
+    ASTNode condition;
+    List<ASTNode> thenBranch;
+    List<ASTNode> elseBranch;
+
+    IfStmt(ASTNode condition, List<ASTNode> thenBranch, List<ASTNode> elseBranch) {
+        this.condition = condition;
+        this.thenBranch = thenBranch;
+        this.elseBranch = elseBranch;
+    }
+}
@@ -0,0 +1,13 @@
+// array[index] = value or dict[key] = value node
+class IndexAssign extends ASTNode {
+    String identifier;
+    ASTNode index;
+    ASTNode expression;
+    int slot = -1;       // Frame slot of the array or dictionary variable
+
+    IndexAssign(String identifier, ASTNode index, ASTNode expression) {
+        this.identifier = identifier;
+        this.index = index;
+        this.expression = expression;
+    }
+}
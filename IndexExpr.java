@@ -0,0 +1,10 @@
+// array[index] or dict[key] node
+class IndexExpr extends ASTNode {
+    ASTNode array;
+    ASTNode index;
+
+    IndexExpr(ASTNode array, ASTNode index) {
+        this.array = array;
+        this.index = index;
+    }
+}
@@ -0,0 +1,8 @@
+// Read of a counted loop's variable; only appears in CountedLoop bodies
+final class InductionVariable extends ASTNode {
+    final CountedLoop loop;
+
+    InductionVariable(CountedLoop loop) {
+        this.loop = loop;
+    }
+}
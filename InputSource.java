@@ -0,0 +1,62 @@
+import java.util.*;
+
+// Supplies the text for input statements, one call per statement executed
+interface InputSource {
+    String read(String identifier);
+
+    // The next record for `for line in lines()`: an Integer when the line is
+    // a number, otherwise a String; null when the input is exhausted
+    default Object nextRecord() {
+        return null;
+    }
+
+    // Prompts on the given sink and reads a line from System.in
+    static InputSource standard(OutputSink out) {
+        return new LineInputSource(LineReader.standardInput(), out);
+    }
+
+    // Reads lines from System.in without prompting, for piped data
+    static InputSource batch() {
+        return new LineInputSource(LineReader.standardInput(), null);
+    }
+
+    // Fixed answers by variable name; an input with no answer is an error
+    static InputSource of(Map<String, String> values) {
+        Map<String, String> copy = Map.copyOf(values);
+        return identifier -> {
+            String value = copy.get(identifier);
+            if (value == null) {
+                throw new RuntimeException("No input for " + identifier);
+            }
+            return value;
+        };
+    }
+}
+
+// Input statements and lines() share one LineReader, so they consume the
+// same stream in order. A null sink means no prompts.
+final class LineInputSource implements InputSource {
+    private final LineReader reader;
+    private final OutputSink prompts;
+
+    LineInputSource(LineReader reader, OutputSink prompts) {
+        this.reader = reader;
+        this.prompts = prompts;
+    }
+
+    public String read(String identifier) {
+        if (prompts != null) {
+            prompts.print("Enter value for " + identifier + ": ");
+            prompts.flush();
+        }
+        String line = reader.readLine();
+        if (line == null) {
+            throw new RuntimeException("No input for " + identifier + ": end of input");
+        }
+        return line;
+    }
+
+    public Object nextRecord() {
+        return reader.readRecord();
+    }
+}
@@ -0,0 +1,9 @@
+// INPUT node
+class InputStmt extends ASTNode {
+    String identifier;
+    int slot = -1;
+
+    InputStmt(String identifier) {
+        this.identifier = identifier;
+    }
+}
@@ -0,0 +1,782 @@
+import java.util.*;
+
+// Interpreter
+class Interpreter {
+    private final OutputSink out;
+    private final InputSource in;
+    private Object[] globalVariables;
+    private Map<String, Function> functions = new HashMap<>();
+    private boolean returnSignal = false;
+    private Object returnValue = null;
+    
+    // Result kinds of evaluatePrimitive; the value is left in the matching field
+    private static final int INT = 0;
+    private static final int DOUBLE = 1;
+    private static final int BOOLEAN = 2;
+    private static final int OBJECT = 3;
+    private int intResult;
+    private double doubleResult;
+    private boolean booleanResult;
+    private Object objectResult;
+    
+    // Statements run so far. Every CHECK_INTERVAL statements the count is
+    // published for other threads and a pending cancel() is picked up.
+    private static final int CHECK_INTERVAL = 1024;
+    private long statements = 0;
+    private volatile long publishedStatements = 0;
+    private volatile boolean cancelled = false;
+    
+    // Set only when profiling; every hook checks for null first
+    private Profiler profiler;
+    
+    // Result caches for pure functions, when memoization is on
+    private int memoCapacity = 0;
+    private Set<FunctionDecl> pureFunctions = Collections.emptySet();
+    private final List<MemoTable> memoTables = new ArrayList<>();
+    
+    // Files opened by builtins during the current run
+    private DataFiles files;
+    
+    // Plans for range loops, built on first run; null for loops that cannot use one
+    private final Map<ForLoop, CountedLoop> countedLoops = new IdentityHashMap<>();
+    
+    Interpreter() {
+        this(OutputSink.standard());
+    }
+    
+    Interpreter(OutputSink out) {
+        this(out, InputSource.standard(out));
+    }
+    
+    Interpreter(OutputSink out, InputSource in) {
+        this.out = out;
+        this.in = in;
+    }
+    
+    // Nodes must have been through the Resolver, which also gives the global frame size
+    void interpret(List<ASTNode> nodes, int globalSlots) {
+        interpret(nodes, Values.newFrame(globalSlots));
+    }
+    
+    void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+    
+    // Caches up to capacity results per pure function; 0 turns it off
+    void setMemoization(int capacity) {
+        this.memoCapacity = capacity;
+    }
+    
+    // Hit and miss counts of every memoized function
+    String memoReport() {
+        StringBuilder report = new StringBuilder();
+        for (MemoTable table : memoTables) {
+            report.append(table.report());
+        }
+        return report.toString();
+    }
+    
+    // Runs with a caller-supplied global frame, which holds the final values
+    // afterwards; slots the caller does not set must be Values.UNASSIGNED
+    void interpret(List<ASTNode> nodes, Object[] globals) {
+        globalVariables = globals;
+        if (memoCapacity > 0) {
+            pureFunctions = PurityAnalysis.pureFunctions(nodes);
+        }
+        if (profiler != null) {
+            profiler.start();
+        }
+        PhaeEvents.InterpretEvent event = new PhaeEvents.InterpretEvent();
+        event.begin();
+        try {
+            for (ASTNode node : nodes) {
+                execute(node, globalVariables);
+                if (returnSignal) {
+                    break;
+                }
+            }
+        } finally {
+            publishedStatements = statements;
+            if (profiler != null) {
+                profiler.stop();
+            }
+            if (files != null) {
+                files.close();
+                files = null;
+            }
+            out.flush();
+            event.end();
+            if (event.shouldCommit()) {
+                event.nodeCount = PhaeEvents.countNodes(nodes);
+                event.statements = statements;
+                event.commit();
+            }
+        }
+    }
+    
+    // Asks a running interpret() to stop; safe to call from any thread.
+    // The run ends with a CancellationException shortly afterwards.
+    void cancel() {
+        cancelled = true;
+    }
+    
+    // Statements executed so far, for progress displays on other threads
+    long statementCount() {
+        return publishedStatements;
+    }
+    
+    private void checkpoint() {
+        publishedStatements = statements;
+        if (cancelled) {
+            throw new java.util.concurrent.CancellationException("Execution stopped");
+        }
+    }
+    
+    private Object execute(ASTNode node, Object[] variables) {
+        if (returnSignal) {
+            return null;
+        }
+        if (++statements % CHECK_INTERVAL == 0) {
+            checkpoint();
+        }
+        if (profiler != null) {
+            profiler.statement(node);
+        }
+        
+        if (node instanceof PrintStmt printStmt) {
+            // Numbers go to the sink unboxed
+            switch (evaluatePrimitive(printStmt.expression, variables)) {
+                case INT: out.println(intResult); break;
+                case DOUBLE: out.println(doubleResult); break;
+                case BOOLEAN: out.println(booleanResult); break;
+                default: out.println(objectResult);
+            }
+        } else if (node instanceof IfStmt ifStmt) {
+            boolean condition = isTrue(ifStmt.condition, variables);
+            if (condition) {
+                for (ASTNode stmt : ifStmt.thenBranch) {
+                    execute(stmt, variables);
+                    if (returnSignal) break;
+                }
+            } else if (!ifStmt.elseBranch.isEmpty()) {
+                for (ASTNode stmt : ifStmt.elseBranch) {
+                    execute(stmt, variables);
+                    if (returnSignal) break;
+                }
+            }
+        } else if (node instanceof ForLoop forLoop) {
+            if (forLoop.iterable instanceof RangeExpr rangeExpr) {
+                int start = toInt(evaluatePrimitive(rangeExpr.start, variables));
+                int end = toInt(evaluatePrimitive(rangeExpr.end, variables));
+                int step = toInt(evaluatePrimitive(rangeExpr.step, variables));
+                
+                CountedLoop counted = countedLoop(forLoop);
+                if (counted != null) {
+                    runCounted(counted, start, end, step, variables);
+                    return null;
+                }
+                
+                for (int i = start; (step > 0) ? i < end : i > end; i += step) {
+                    variables[forLoop.slot] = i;
+                    if (profiler != null) {
+                        profiler.iteration(forLoop);
+                    }
+                    // An empty body would otherwise never reach a checkpoint
+                    if (forLoop.body.isEmpty() && ++statements % CHECK_INTERVAL == 0) {
+                        checkpoint();
+                    }
+                    
+                    for (ASTNode stmt : forLoop.body) {
+                        execute(stmt, variables);
+                        if (returnSignal) return null;
+                    }
+                }
+            } else {
+                Object iterable = forLoop.iterable instanceof LinesExpr ? null : evaluate(forLoop.iterable, variables);
+                if (iterable instanceof PhaeArray array) {
+                    CountedLoop counted = countedLoop(forLoop);
+                    if (counted != null) {
+                        runArray(counted, array, variables);
+                        return null;
+                    }
+                    for (int i = 0; i < array.length(); i++) {
+                        variables[forLoop.slot] = array.get(i);
+                        if (profiler != null) {
+                            profiler.iteration(forLoop);
+                        }
+                        for (ASTNode stmt : forLoop.body) {
+                            execute(stmt, variables);
+                            if (returnSignal) return null;
+                        }
+                    }
+                    return null;
+                }
+                if (iterable instanceof PhaeDict dict) {
+                    // Keys in insertion order; int keys stay unboxed in a counted loop
+                    CountedLoop counted = dict.hasIntKeys() ? countedLoop(forLoop) : null;
+                    if (counted != null) {
+                        runIntKeys(counted, dict, variables);
+                        return null;
+                    }
+                    int size = dict.size();
+                    for (int i = 0; i < size; i++) {
+                        variables[forLoop.slot] = dict.keyAt(i);
+                        if (profiler != null) {
+                            profiler.iteration(forLoop);
+                        }
+                        for (ASTNode stmt : forLoop.body) {
+                            execute(stmt, variables);
+                            if (returnSignal) return null;
+                        }
+                        checkSize(dict, size);
+                    }
+                    return null;
+                }
+                
+                // Input lines and files are read one record at a time, as the loop asks for them
+                Records records;
+                if (forLoop.iterable instanceof LinesExpr) {
+                    records = in::nextRecord;
+                } else if (iterable instanceof Records fileRecords) {
+                    records = fileRecords;
+                } else {
+                    throw new RuntimeException("Cannot iterate over " + Profiler.describe(forLoop.iterable));
+                }
+                Object record;
+                while ((record = records.next()) != null) {
+                    variables[forLoop.slot] = record;
+                    if (profiler != null) {
+                        profiler.iteration(forLoop);
+                    }
+                    if (forLoop.body.isEmpty() && ++statements % CHECK_INTERVAL == 0) {
+                        checkpoint();
+                    }
+                    for (ASTNode stmt : forLoop.body) {
+                        execute(stmt, variables);
+                        if (returnSignal) return null;
+                    }
+                }
+            }
+        } else if (node instanceof WhileLoop whileLoop) {
+            while (isTrue(whileLoop.condition, variables)) {
+                if (profiler != null) {
+                    profiler.iteration(whileLoop);
+                }
+                // An empty body would otherwise never reach a checkpoint
+                if (whileLoop.body.isEmpty() && ++statements % CHECK_INTERVAL == 0) {
+                    checkpoint();
+                }
+                for (ASTNode stmt : whileLoop.body) {
+                    execute(stmt, variables);
+                    if (returnSignal) return null; // Allow early exits
+                }
+            }
+        } else if (node instanceof VarAssign varAssign) {
+            Object value = evaluate(varAssign.expression, variables);
+            variables[varAssign.slot] = value;
+        } else if (node instanceof IndexAssign indexAssign) {
+            Object target = Values.checkAssigned(variables[indexAssign.slot], indexAssign.identifier);
+            if (target instanceof PhaeDict dict) {
+                int kind = evaluatePrimitive(indexAssign.index, variables);
+                if (isIntKey(kind)) {
+                    int key = intResult;
+                    dict.putInt(key, evaluate(indexAssign.expression, variables));
+                } else {
+                    Object key = box(kind);
+                    dict.put(key, evaluate(indexAssign.expression, variables));
+                }
+                return null;
+            }
+            PhaeArray array = toArray(target);
+            int index = toIndex(evaluatePrimitive(indexAssign.index, variables));
+            switch (evaluatePrimitive(indexAssign.expression, variables)) {
+                case INT: array.set(index, intResult); break;
+                case DOUBLE: array.set(index, doubleResult); break;
+                default: array.set(index, box(OBJECT));
+            }
+        } else if (node instanceof FunctionDecl funcDecl) {
+            // Store function for later use
+            Function function = new Function(funcDecl.name, funcDecl.parameters, funcDecl.body, funcDecl.frameSize);
+            if (memoCapacity > 0 && pureFunctions.contains(funcDecl)) {
+                function.memo = new MemoTable(funcDecl.name, funcDecl.parameters.size(), memoCapacity);
+                memoTables.add(function.memo);
+            }
+            functions.put(funcDecl.name, function);
+        } else if (node instanceof FunctionCall funcCall) {
+            return callFunction(funcCall.name, funcCall.arguments, variables);
+        } else if (node instanceof ReturnStmt returnStmt) {
+            returnValue = evaluate(returnStmt.value, variables);
+            returnSignal = true;
+            return returnValue;
+        } else if (node instanceof InputStmt inputStmt) {
+            String input = in.read(inputStmt.identifier);
+        
+            // Try to parse input as a number; otherwise, store as a string.
+            try {
+                variables[inputStmt.slot] = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                variables[inputStmt.slot] = input;
+            }
+        }
+        
+        
+        return null;
+    }
+    
+    // The loop's plan, when it can run one now. The profiler counts the
+    // original nodes, so it keeps the plain loop.
+    private CountedLoop countedLoop(ForLoop forLoop) {
+        if (profiler != null) {
+            return null;
+        }
+        CountedLoop counted = countedLoops.get(forLoop);
+        if (counted == null && !countedLoops.containsKey(forLoop)) {
+            counted = CountedLoop.plan(forLoop);
+            countedLoops.put(forLoop, counted);
+        }
+        return counted != null && !counted.active ? counted : null;
+    }
+    
+    // Walks an array without boxing: each element is copied into the plan,
+    // where the body's reads of the loop variable find it
+    private void runArray(CountedLoop counted, PhaeArray array, Object[] variables) {
+        List<ASTNode> body = counted.body;
+        int size = body.size();
+        int length = array.length();
+        counted.active = true;
+        counted.reset();
+        try {
+            for (int i = 0; i < length; i++) {
+                if (array.holdsDoubles()) {
+                    counted.doubles = true;
+                    counted.element = array.doubleAt(i);
+                } else {
+                    counted.doubles = false;
+                    counted.index = array.intAt(i);
+                }
+                for (int s = 0; s < size; s++) {
+                    execute(body.get(s), variables);
+                    if (counted.mayReturn && returnSignal) return;
+                }
+            }
+        } finally {
+            counted.active = false;
+            counted.reset();
+            if (length > 0) {
+                variables[counted.loop.slot] = counted.doubles ? (Object) counted.element : (Object) counted.index;
+            }
+            counted.doubles = false;
+        }
+    }
+    
+    // Walks the keys of a dictionary that has only int keys, like runArray
+    private void runIntKeys(CountedLoop counted, PhaeDict dict, Object[] variables) {
+        List<ASTNode> body = counted.body;
+        int size = dict.size();
+        counted.active = true;
+        counted.reset();
+        try {
+            for (int i = 0; i < size; i++) {
+                counted.index = dict.intKeyAt(i);
+                for (int s = 0; s < body.size(); s++) {
+                    execute(body.get(s), variables);
+                    if (counted.mayReturn && returnSignal) return;
+                }
+                checkSize(dict, size);
+            }
+        } finally {
+            counted.active = false;
+            counted.reset();
+            if (size > 0) {
+                variables[counted.loop.slot] = counted.index;
+            }
+        }
+    }
+    
+    // Keys added by the loop body would be visited or skipped depending on
+    // where they land, so that is an error
+    private static void checkSize(PhaeDict dict, int size) {
+        if (dict.size() != size) {
+            throw new RuntimeException("Dictionary changed size during iteration");
+        }
+    }
+    
+    // A range loop whose variable is an int local. Statements that cannot
+    // return skip the return signal checks.
+    private void runCounted(CountedLoop counted, int start, int end, int step, Object[] variables) {
+        List<ASTNode> body = counted.body;
+        int size = body.size();
+        int i = start;
+        counted.active = true;
+        counted.reset();
+        try {
+            if (counted.mayReturn) {
+                for (; (step > 0) ? i < end : i > end; i += step) {
+                    counted.index = i;
+                    for (int s = 0; s < size; s++) {
+                        execute(body.get(s), variables);
+                        if (returnSignal) return;
+                    }
+                }
+            } else if (size == 0) {
+                // An empty body would otherwise never reach a checkpoint
+                for (; (step > 0) ? i < end : i > end; i += step) {
+                    counted.index = i;
+                    if (++statements % CHECK_INTERVAL == 0) {
+                        checkpoint();
+                    }
+                }
+            } else {
+                for (; (step > 0) ? i < end : i > end; i += step) {
+                    counted.index = i;
+                    for (int s = 0; s < size; s++) {
+                        execute(body.get(s), variables);
+                    }
+                }
+            }
+        } finally {
+            counted.active = false;
+            counted.reset();
+            // The variable keeps its last value after the loop, as in the plain loop
+            if (i != start) {
+                variables[counted.loop.slot] = counted.index;
+            }
+        }
+    }
+    
+    private Object callFunction(String name, List<ASTNode> arguments, Object[] currentScope) {
+        Function function = functions.get(name);
+        if (function == null) {
+            // User functions take precedence over builtins of the same name
+            if (DataFiles.isBuiltin(name) || PhaeArray.isBuiltin(name) || PhaeDict.isBuiltin(name)) {
+                return callBuiltin(name, arguments, currentScope);
+            }
+            throw new RuntimeException("Undefined function: " + name);
+        }
+        
+        // Create a new scope for the function
+        Object[] functionScope = Values.newFrame(function.frameSize);
+        
+        // Evaluate and bind arguments to parameters
+        if (arguments.size() != function.parameters.size()) {
+            throw new RuntimeException("Expected " + function.parameters.size() + 
+                                      " arguments but got " + arguments.size());
+        }
+        
+        for (int i = 0; i < arguments.size(); i++) {
+            Object argValue = evaluate(arguments.get(i), currentScope);
+            functionScope[i] = argValue;
+        }
+        
+        MemoTable memo = function.memo;
+        int entry = memo != null ? memo.find(functionScope) : -2;
+        if (entry >= 0) {
+            return memo.value(entry);
+        }
+        // The body may assign to its parameters, so keep the key apart
+        Object[] key = entry == -1 ? Arrays.copyOf(functionScope, function.parameters.size()) : null;
+        
+        PhaeEvents.FunctionCallEvent event = new PhaeEvents.FunctionCallEvent();
+        event.begin();
+        Object result;
+        if (profiler == null) {
+            result = invoke(function, functionScope);
+        } else {
+            profiler.enter(name);
+            try {
+                result = invoke(function, functionScope);
+            } finally {
+                profiler.exit();
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.functionName = name;
+            event.commit();
+        }
+        if (entry == -1) {
+            memo.put(key, result);
+        }
+        return result;
+    }
+    
+    private Object callBuiltin(String name, List<ASTNode> arguments, Object[] currentScope) {
+        List<Object> values = new ArrayList<>(arguments.size());
+        for (ASTNode argument : arguments) {
+            values.add(evaluate(argument, currentScope));
+        }
+        if (PhaeArray.isBuiltin(name)) {
+            return PhaeArray.call(name, values);
+        } else if (PhaeDict.isBuiltin(name)) {
+            return PhaeDict.call(name, values);
+        }
+        if (files == null) {
+            files = new DataFiles();
+        }
+        return files.call(name, values);
+    }
+    
+    private Object invoke(Function function, Object[] functionScope) {
+        // Reset return signal
+        returnSignal = false;
+        returnValue = null;
+        
+        // Execute function body
+        for (ASTNode stmt : function.body) {
+            execute(stmt, functionScope);
+            if (returnSignal) {
+                // Reset return signal for next function call
+                returnSignal = false;
+                return returnValue;
+            }
+        }
+        
+        // Default return value if no return statement
+        return null;
+    }
+    
+    private Object evaluate(ASTNode node, Object[] variables) {
+        if (node instanceof Literal literal) {
+            return literal.value;
+        } else if (node instanceof Expression expr) {
+            if (expr.type == TokenType.NUMBER) {
+                return Integer.parseInt(expr.value);
+            } else if (expr.type == TokenType.FLOAT) {
+                return Double.parseDouble(expr.value);
+            } else if (expr.type == TokenType.STRING) {
+                return expr.value;
+            } else if (expr.type == TokenType.IDENTIFIER) {
+                Object value = variables[expr.slot];
+                return expr.mayBeUnassigned ? Values.checkAssigned(value, expr.value) : value;
+            }
+        } else if (node instanceof BinaryExpr binExpr) {
+            return box(evaluatePrimitive(binExpr, variables));
+        } else if (node instanceof InductionVariable induction) {
+            return induction.loop.doubles ? (Object) induction.loop.element : (Object) induction.loop.index;
+        } else if (node instanceof IndexExpr indexExpr) {
+            Object container = evaluate(indexExpr.array, variables);
+            if (container instanceof PhaeDict dict) {
+                return lookup(dict, indexExpr.index, variables);
+            }
+            return box(element(toArray(container), indexExpr.index, variables));
+        } else if (node instanceof DictLiteral dictLiteral) {
+            PhaeDict dict = new PhaeDict();
+            for (int i = 0; i < dictLiteral.keys.size(); i++) {
+                Object key = evaluate(dictLiteral.keys.get(i), variables);
+                dict.put(key, evaluate(dictLiteral.values.get(i), variables));
+            }
+            return dict;
+        } else if (node instanceof ArrayLiteral arrayLiteral) {
+            List<Object> elements = new ArrayList<>(arrayLiteral.elements.size());
+            for (ASTNode element : arrayLiteral.elements) {
+                elements.add(evaluate(element, variables));
+            }
+            return PhaeArray.of(elements);
+        } else if (node instanceof HoistedExpr hoisted) {
+            if (!hoisted.ready) {
+                hoisted.value = evaluate(hoisted.expression, variables);
+                hoisted.ready = true;
+            }
+            return hoisted.value;
+        } else if (node instanceof FunctionCall funcCall) {
+            return callFunction(funcCall.name, funcCall.arguments, variables);
+        }
+        
+        throw new RuntimeException("Could not evaluate node: " + node.getClass().getSimpleName());
+    }
+    
+    // Evaluates an expression without boxing numeric and boolean results.
+    // Nested BinaryExprs stay primitive; values are only boxed by box() when
+    // they escape into a frame slot, a print or a function return.
+    private int evaluatePrimitive(ASTNode node, Object[] variables) {
+        if (!(node instanceof BinaryExpr binExpr)) {
+            if (node instanceof Literal literal) {
+                return unbox(literal.value);
+            } else if (node instanceof InductionVariable induction) {
+                if (induction.loop.doubles) {
+                    doubleResult = induction.loop.element;
+                    return DOUBLE;
+                }
+                intResult = induction.loop.index;
+                return INT;
+            } else if (node instanceof IndexExpr indexExpr) {
+                Object container = evaluate(indexExpr.array, variables);
+                if (container instanceof PhaeDict dict) {
+                    return unbox(lookup(dict, indexExpr.index, variables));
+                }
+                return element(toArray(container), indexExpr.index, variables);
+            }
+            return unbox(evaluate(node, variables));
+        }
+        
+        int leftKind = evaluatePrimitive(binExpr.left, variables);
+        int leftInt = intResult;
+        double leftDouble = leftKind == INT ? intResult : doubleResult;
+        Object leftObject = objectResult;
+        boolean leftBoolean = booleanResult;
+        int rightKind = evaluatePrimitive(binExpr.right, variables);
+        
+        if ((leftKind == INT || leftKind == DOUBLE) && (rightKind == INT || rightKind == DOUBLE)) {
+            boolean ints = leftKind == INT && rightKind == INT;
+            int rightInt = intResult;
+            double rightDouble = rightKind == INT ? intResult : doubleResult;
+            
+            // Same results as Values: arithmetic on two ints is done in int and widened
+            switch (binExpr.operator.value) {
+                case "+":
+                    doubleResult = ints ? leftInt + rightInt : leftDouble + rightDouble;
+                    return DOUBLE;
+                case "-":
+                    doubleResult = ints ? leftInt - rightInt : leftDouble - rightDouble;
+                    return DOUBLE;
+                case "*":
+                    doubleResult = ints ? leftInt * rightInt : leftDouble * rightDouble;
+                    return DOUBLE;
+                case "/":
+                    if (rightDouble == 0.0) {
+                        throw new RuntimeException("Division by zero");
+                    }
+                    doubleResult = ints ? leftInt / rightInt : leftDouble / rightDouble;
+                    return DOUBLE;
+                case "%":
+                    if (!ints) {
+                        throw new RuntimeException("Modulo operator is not supported for floating-point numbers");
+                    }
+                    intResult = leftInt % rightInt;
+                    return INT;
+                case "==":
+                    booleanResult = ints ? leftInt == rightInt : sameDouble(leftDouble, rightDouble);
+                    return BOOLEAN;
+                case "!=":
+                    booleanResult = ints ? leftInt != rightInt : !sameDouble(leftDouble, rightDouble);
+                    return BOOLEAN;
+                case ">":
+                    booleanResult = ints ? leftInt > rightInt : leftDouble > rightDouble;
+                    return BOOLEAN;
+                case "<":
+                    booleanResult = ints ? leftInt < rightInt : leftDouble < rightDouble;
+                    return BOOLEAN;
+                case ">=":
+                    booleanResult = ints ? leftInt >= rightInt : leftDouble >= rightDouble;
+                    return BOOLEAN;
+                case "<=":
+                    booleanResult = ints ? leftInt <= rightInt : leftDouble <= rightDouble;
+                    return BOOLEAN;
+                default:
+                    throw new RuntimeException("Unknown operator: " + binExpr.operator.value);
+            }
+        }
+        
+        // Strings, booleans and nulls take the generic path
+        Object left = box(leftKind, leftInt, leftDouble, leftBoolean, leftObject);
+        Object right = box(rightKind);
+        switch (binExpr.operator.value) {
+            case "+": return unbox(Values.add(left, right));
+            case "-": return unbox(Values.subtract(left, right));
+            case "*": return unbox(Values.multiply(left, right));
+            case "/": return unbox(Values.divide(left, right));
+            case "%": return unbox(Values.modulo(left, right));
+            case "==": return unbox(Values.equal(left, right));
+            case "!=": return unbox(!Values.equal(left, right));
+            case ">": return unbox(Values.greater(left, right));
+            case "<": return unbox(Values.less(left, right));
+            case ">=": return unbox(Values.greaterOrEqual(left, right));
+            case "<=": return unbox(Values.lessOrEqual(left, right));
+            default:
+                throw new RuntimeException("Unknown operator: " + binExpr.operator.value);
+        }
+    }
+    
+    // Double.equals semantics, which Values.equal uses for boxed doubles
+    private static boolean sameDouble(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+    
+    private int unbox(Object value) {
+        if (value instanceof Integer i) {
+            intResult = i;
+            return INT;
+        } else if (value instanceof Double d) {
+            doubleResult = d;
+            return DOUBLE;
+        } else if (value instanceof Boolean b) {
+            booleanResult = b;
+            return BOOLEAN;
+        }
+        objectResult = value;
+        return OBJECT;
+    }
+    
+    private Object box(int kind) {
+        return box(kind, intResult, doubleResult, booleanResult, objectResult);
+    }
+    
+    private static Object box(int kind, int i, double d, boolean b, Object o) {
+        switch (kind) {
+            case INT: return i;
+            case DOUBLE: return d;
+            case BOOLEAN: return b;
+            default: return o;
+        }
+    }
+    
+    private boolean isTrue(ASTNode condition, Object[] variables) {
+        switch (evaluatePrimitive(condition, variables)) {
+            case INT: return intResult != 0;
+            case DOUBLE: return false;
+            case BOOLEAN: return booleanResult;
+            default: return Values.isTrue(objectResult);
+        }
+    }
+    
+    // Elements come out of the array unboxed
+    private int element(PhaeArray array, ASTNode indexNode, Object[] variables) {
+        int index = toIndex(evaluatePrimitive(indexNode, variables));
+        if (array.holdsDoubles()) {
+            doubleResult = array.doubleAt(index);
+            return DOUBLE;
+        }
+        intResult = array.intAt(index);
+        return INT;
+    }
+    
+    // Int keys are looked up without boxing them
+    private Object lookup(PhaeDict dict, ASTNode keyNode, Object[] variables) {
+        int kind = evaluatePrimitive(keyNode, variables);
+        boolean intKey = isIntKey(kind);
+        int entry = intKey ? dict.findInt(intResult) : dict.find(box(kind));
+        if (entry < 0) {
+            throw new RuntimeException("Key not found: " + (intKey ? Integer.toString(intResult) : box(kind)));
+        }
+        return dict.valueAt(entry);
+    }
+    
+    // Dictionaries store whole doubles as ints; sets intResult when true
+    private boolean isIntKey(int kind) {
+        if (kind == DOUBLE && doubleResult == (int) doubleResult) {
+            intResult = (int) doubleResult;
+            return true;
+        }
+        return kind == INT;
+    }
+    
+    private static PhaeArray toArray(Object value) {
+        if (value instanceof PhaeArray array) {
+            return array;
+        }
+        throw new RuntimeException("Cannot index " + (value == null ? "null" : value.toString()));
+    }
+    
+    // Array indexes are ints or whole doubles
+    private int toIndex(int kind) {
+        if (kind == INT) {
+            return intResult;
+        }
+        return PhaeArray.toIndex(box(kind));
+    }
+    
+    // Range bounds must be ints; anything else fails with the usual cast error
+    private int toInt(int kind) {
+        return kind == INT ? intResult : (Integer) box(kind);
+    }
+}
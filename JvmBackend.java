@@ -0,0 +1,688 @@
+import java.io.*;
+import java.lang.invoke.*;
+import java.util.*;
+
+// JVM backend: lowers a resolved AST to a class file and loads it as a hidden
+// class. Top-level code becomes a static main(JvmRuntime) method and every
+// FunctionDecl becomes a real static method, so HotSpot can inline and compile
+// Phae calls like any other Java call. Values stay boxed and all operators go
+// through Values, so the output matches the Interpreter.
+class JvmBackend {
+    private static final String CLASS_NAME = "PhaeProgram";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String RUNTIME = "JvmRuntime";
+    private static final String VALUES = "Values";
+
+    private final Map<String, FunctionDecl> functions = new HashMap<>();
+    private final Map<String, Integer> functionIndexes = new HashMap<>();
+    private JvmClassWriter classWriter;
+
+    // Nodes must have been through the Resolver
+    JvmProgram compile(List<ASTNode> nodes, int globalSlots) {
+        for (ASTNode node : nodes) {
+            if (node instanceof FunctionDecl funcDecl) {
+                if (functions.put(funcDecl.name, funcDecl) != null) {
+                    throw new RuntimeException("Function " + funcDecl.name + " is declared more than once; not supported by the jvm backend");
+                }
+                functionIndexes.put(funcDecl.name, functionIndexes.size());
+            }
+        }
+
+        classWriter = new JvmClassWriter(CLASS_NAME, OBJECT);
+        for (FunctionDecl funcDecl : functions.values()) {
+            MethodEmitter method = new MethodEmitter(funcDecl.frameSize, funcDecl.parameters.size(), true);
+            method.block(funcDecl.body);
+            method.code.op(JvmClassWriter.ACONST_NULL, 1);
+            method.code.op(JvmClassWriter.ARETURN, -1);
+            classWriter.addMethod(methodName(funcDecl.name), methodDescriptor(funcDecl.parameters.size()), method.code);
+        }
+
+        MethodEmitter main = new MethodEmitter(globalSlots, 0, false);
+        main.block(nodes);
+        main.code.op(JvmClassWriter.RETURN, 0);
+        classWriter.addMethod("main", "(L" + RUNTIME + ";)V", main.code);
+
+        byte[] bytes = classWriter.toByteArray();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle entry = lookup.findStatic(lookup.lookupClass(), "main",
+                                                   MethodType.methodType(void.class, JvmRuntime.class));
+            return new JvmProgram(entry, functionIndexes.size());
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new RuntimeException("Could not load generated class: " + e.getMessage());
+        }
+    }
+
+    private static String methodName(String function) {
+        return "fn_" + function;
+    }
+
+    private static String methodDescriptor(int arity) {
+        StringBuilder descriptor = new StringBuilder("(L" + RUNTIME + ";");
+        for (int i = 0; i < arity; i++) {
+            descriptor.append("Ljava/lang/Object;");
+        }
+        return descriptor.append(")Ljava/lang/Object;").toString();
+    }
+
+    // Emits the body of one method. Local 0 holds the JvmRuntime, frame slot
+    // n lives in local n + 1 and int temporaries for range loops come after.
+    private class MethodEmitter {
+        final JvmClassWriter.Code code;
+        final boolean inFunction;
+        private int nextLocal;
+
+        MethodEmitter(int frameSize, int parameterCount, boolean inFunction) {
+            this.code = classWriter.newCode();
+            this.inFunction = inFunction;
+            this.nextLocal = frameSize + 1;
+            code.reserveLocals(nextLocal);
+
+            // Non-parameter slots start out unassigned, which also keeps the
+            // verifier's definite assignment check happy on every path
+            for (int slot = parameterCount; slot < frameSize; slot++) {
+                code.invoke(JvmClassWriter.INVOKESTATIC, RUNTIME, "unassigned", "()Ljava/lang/Object;", 1);
+                code.local(JvmClassWriter.ASTORE, slot + 1, -1);
+            }
+        }
+
+        void block(List<ASTNode> nodes) {
+            for (ASTNode node : nodes) {
+                statement(node);
+            }
+        }
+
+        private void statement(ASTNode node) {
+            if (node instanceof PrintStmt printStmt) {
+                loadRuntime();
+                expression(printStmt.expression);
+                code.invoke(JvmClassWriter.INVOKEVIRTUAL, RUNTIME, "print", "(Ljava/lang/Object;)V", -2);
+            } else if (node instanceof IfStmt ifStmt) {
+                JvmClassWriter.Label elseLabel = code.newLabel();
+                JvmClassWriter.Label endLabel = code.newLabel();
+                condition(ifStmt.condition);
+                code.jump(JvmClassWriter.IFEQ, elseLabel, -1);
+                block(ifStmt.thenBranch);
+                code.jump(JvmClassWriter.GOTO, endLabel, 0);
+                code.bind(elseLabel);
+                block(ifStmt.elseBranch);
+                code.bind(endLabel);
+            } else if (node instanceof ForLoop forLoop) {
+                if (forLoop.iterable instanceof RangeExpr rangeExpr) {
+                    rangeLoop(forLoop, rangeExpr);
+                } else {
+                    throw new RuntimeException("Loops over arrays, dictionaries, lines() and files are only supported by the interpreter engine");
+                }
+            } else if (node instanceof WhileLoop whileLoop) {
+                JvmClassWriter.Label top = code.newLabel();
+                JvmClassWriter.Label exit = code.newLabel();
+                code.bind(top);
+                condition(whileLoop.condition);
+                code.jump(JvmClassWriter.IFEQ, exit, -1);
+                block(whileLoop.body);
+                code.jump(JvmClassWriter.GOTO, top, 0);
+                code.bind(exit);
+            } else if (node instanceof VarAssign varAssign) {
+                expression(varAssign.expression);
+                code.local(JvmClassWriter.ASTORE, varAssign.slot + 1, -1);
+            } else if (node instanceof FunctionDecl funcDecl) {
+                loadRuntime();
+                code.pushInt(functionIndexes.get(funcDecl.name));
+                code.invoke(JvmClassWriter.INVOKEVIRTUAL, RUNTIME, "define", "(I)V", -2);
+            } else if (node instanceof FunctionCall funcCall) {
+                call(funcCall);
+                code.op(JvmClassWriter.POP, -1);
+            } else if (node instanceof ReturnStmt returnStmt) {
+                expression(returnStmt.value);
+                if (inFunction) {
+                    code.op(JvmClassWriter.ARETURN, -1);
+                } else {
+                    code.op(JvmClassWriter.POP, -1);
+                    code.op(JvmClassWriter.RETURN, 0);
+                }
+            } else if (node instanceof InputStmt inputStmt) {
+                loadRuntime();
+                code.constant(classWriter.string(inputStmt.identifier), 1);
+                code.invoke(JvmClassWriter.INVOKEVIRTUAL, RUNTIME, "input", "(Ljava/lang/String;)Ljava/lang/Object;", -1);
+                code.local(JvmClassWriter.ASTORE, inputStmt.slot + 1, -1);
+            } else if (node instanceof IndexAssign) {
+                throw new RuntimeException("Arrays and dictionaries are only supported by the interpreter engine");
+            }
+        }
+
+        private void rangeLoop(ForLoop forLoop, RangeExpr rangeExpr) {
+            int index = nextLocal++;
+            int end = nextLocal++;
+            int step = nextLocal++;
+            code.reserveLocals(nextLocal);
+
+            intExpression(rangeExpr.start);
+            code.local(JvmClassWriter.ISTORE, index, -1);
+            intExpression(rangeExpr.end);
+            code.local(JvmClassWriter.ISTORE, end, -1);
+            intExpression(rangeExpr.step);
+            code.local(JvmClassWriter.ISTORE, step, -1);
+
+            JvmClassWriter.Label top = code.newLabel();
+            JvmClassWriter.Label descending = code.newLabel();
+            JvmClassWriter.Label body = code.newLabel();
+            JvmClassWriter.Label exit = code.newLabel();
+
+            // (step > 0) ? i < end : i > end
+            code.bind(top);
+            code.local(JvmClassWriter.ILOAD, step, 1);
+            code.jump(JvmClassWriter.IFLE, descending, -1);
+            code.local(JvmClassWriter.ILOAD, index, 1);
+            code.local(JvmClassWriter.ILOAD, end, 1);
+            code.jump(JvmClassWriter.IF_ICMPGE, exit, -2);
+            code.jump(JvmClassWriter.GOTO, body, 0);
+            code.bind(descending);
+            code.local(JvmClassWriter.ILOAD, index, 1);
+            code.local(JvmClassWriter.ILOAD, end, 1);
+            code.jump(JvmClassWriter.IF_ICMPLE, exit, -2);
+
+            code.bind(body);
+            code.local(JvmClassWriter.ILOAD, index, 1);
+            code.invoke(JvmClassWriter.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", 0);
+            code.local(JvmClassWriter.ASTORE, forLoop.slot + 1, -1);
+            block(forLoop.body);
+
+            code.local(JvmClassWriter.ILOAD, index, 1);
+            code.local(JvmClassWriter.ILOAD, step, 1);
+            code.op(JvmClassWriter.IADD, -1);
+            code.local(JvmClassWriter.ISTORE, index, -1);
+            code.jump(JvmClassWriter.GOTO, top, 0);
+            code.bind(exit);
+        }
+
+        // Leaves an int on the stack, with the same cast the Interpreter uses
+        private void intExpression(ASTNode node) {
+            expression(node);
+            code.type(JvmClassWriter.CHECKCAST, "java/lang/Integer", 0);
+            code.invoke(JvmClassWriter.INVOKEVIRTUAL, "java/lang/Integer", "intValue", "()I", 0);
+        }
+
+        // Leaves the truthiness of the expression as an int on the stack
+        private void condition(ASTNode node) {
+            expression(node);
+            code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "isTrue", "(Ljava/lang/Object;)Z", 0);
+        }
+
+        private void expression(ASTNode node) {
+            if (node instanceof Literal literal) {
+                constant(literal.value);
+            } else if (node instanceof Expression expr) {
+                if (expr.type == TokenType.NUMBER) {
+                    constant(Integer.parseInt(expr.value));
+                } else if (expr.type == TokenType.FLOAT) {
+                    constant(Double.parseDouble(expr.value));
+                } else if (expr.type == TokenType.STRING) {
+                    constant(expr.value);
+                } else if (expr.type == TokenType.IDENTIFIER) {
+                    code.local(JvmClassWriter.ALOAD, expr.slot + 1, 1);
+                    if (expr.mayBeUnassigned) {
+                        constant(expr.value);
+                        code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "checkAssigned",
+                                    "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;", -1);
+                    }
+                }
+            } else if (node instanceof BinaryExpr binExpr) {
+                expression(binExpr.left);
+                expression(binExpr.right);
+                binary(binExpr.operator.value);
+            } else if (node instanceof FunctionCall funcCall) {
+                call(funcCall);
+            } else if (node instanceof ArrayLiteral || node instanceof DictLiteral || node instanceof IndexExpr) {
+                throw new RuntimeException("Arrays and dictionaries are only supported by the interpreter engine");
+            } else {
+                throw new RuntimeException("Could not evaluate node: " + node.getClass().getSimpleName());
+            }
+        }
+
+        private void binary(String operator) {
+            String arithmetic = "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;";
+            String comparison = "(Ljava/lang/Object;Ljava/lang/Object;)Z";
+            switch (operator) {
+                case "+": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "add", arithmetic, -1); return;
+                case "-": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "subtract", arithmetic, -1); return;
+                case "*": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "multiply", arithmetic, -1); return;
+                case "/": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "divide", arithmetic, -1); return;
+                case "%": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "modulo", arithmetic, -1); return;
+                case "==": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "equal", comparison, -1); break;
+                case "!=":
+                    code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "equal", comparison, -1);
+                    code.op(JvmClassWriter.ICONST_1, 1);
+                    code.op(JvmClassWriter.IXOR, -1);
+                    break;
+                case ">": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "greater", comparison, -1); break;
+                case "<": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "less", comparison, -1); break;
+                case ">=": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "greaterOrEqual", comparison, -1); break;
+                case "<=": code.invoke(JvmClassWriter.INVOKESTATIC, VALUES, "lessOrEqual", comparison, -1); break;
+                default:
+                    throw new RuntimeException("Unknown operator: " + operator);
+            }
+            code.invoke(JvmClassWriter.INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+        }
+
+        // Leaves the call result on the stack. Definition and arity are checked
+        // when the call runs, in the same order as the Interpreter.
+        private void call(FunctionCall funcCall) {
+            FunctionDecl target = functions.get(funcCall.name);
+            if (target == null) {
+                fail("Undefined function: " + funcCall.name);
+                return;
+            }
+
+            loadRuntime();
+            code.pushInt(functionIndexes.get(funcCall.name));
+            code.constant(classWriter.string(funcCall.name), 1);
+            code.invoke(JvmClassWriter.INVOKEVIRTUAL, RUNTIME, "checkDefined", "(ILjava/lang/String;)V", -3);
+
+            int arity = target.parameters.size();
+            if (funcCall.arguments.size() != arity) {
+                fail("Expected " + arity + " arguments but got " + funcCall.arguments.size());
+                return;
+            }
+
+            loadRuntime();
+            for (ASTNode argument : funcCall.arguments) {
+                expression(argument);
+            }
+            code.invoke(JvmClassWriter.INVOKESTATIC, CLASS_NAME, methodName(funcCall.name), methodDescriptor(arity), -arity);
+        }
+
+        // Throws at run time; the stack is accounted as if a value was produced
+        private void fail(String message) {
+            code.constant(classWriter.string(message), 1);
+            code.invoke(JvmClassWriter.INVOKESTATIC, RUNTIME, "error", "(Ljava/lang/String;)Ljava/lang/RuntimeException;", 0);
+            code.op(JvmClassWriter.ATHROW, 0);
+        }
+
+        private void constant(Object value) {
+            if (value instanceof Integer intValue) {
+                code.constant(classWriter.integer(intValue), 1);
+                code.invoke(JvmClassWriter.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", 0);
+            } else if (value instanceof Double doubleValue) {
+                code.constant2(classWriter.doubleConstant(doubleValue));
+                code.invoke(JvmClassWriter.INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", -1);
+            } else {
+                code.constant(classWriter.string((String) value), 1);
+            }
+        }
+
+        private void loadRuntime() {
+            code.local(JvmClassWriter.ALOAD, 0, 1);
+        }
+    }
+}
+
+// Services the generated code calls back into, one instance per run
+final class JvmRuntime {
+    private final boolean[] defined;
+    private final OutputSink out;
+
+    JvmRuntime(int functionCount, OutputSink out) {
+        this.defined = new boolean[functionCount];
+        this.out = out;
+    }
+
+    void print(Object value) {
+        out.println(value);
+    }
+
+    Object input(String identifier) {
+        String input = InputSource.standard(out).read(identifier);
+
+        // Try to parse input as a number; otherwise, store as a string.
+        try {
+            return Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            return input;
+        }
+    }
+
+    void define(int index) {
+        defined[index] = true;
+    }
+
+    void checkDefined(int index, String name) {
+        if (!defined[index]) {
+            throw new RuntimeException("Undefined function: " + name);
+        }
+    }
+
+    static RuntimeException error(String message) {
+        return new RuntimeException(message);
+    }
+
+    static Object unassigned() {
+        return Values.UNASSIGNED;
+    }
+}
+
+// A program loaded by the JvmBackend, can be run any number of times
+final class JvmProgram {
+    private final MethodHandle entry;
+    private final int functionCount;
+
+    JvmProgram(MethodHandle entry, int functionCount) {
+        this.entry = entry;
+        this.functionCount = functionCount;
+    }
+
+    void run() {
+        run(OutputSink.standard());
+    }
+
+    void run(OutputSink out) {
+        try {
+            entry.invokeExact(new JvmRuntime(functionCount, out));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        } finally {
+            out.flush();
+        }
+    }
+}
+
+// Minimal class file writer for the JvmBackend. Writes version 49 class files,
+// which the JVM verifies by type inference, so no stack map frames are needed.
+final class JvmClassWriter {
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int IADD = 0x60;
+    static final int IXOR = 0x82;
+    static final int IFEQ = 0x99;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESTATIC = 0xb8;
+    static final int ATHROW = 0xbf;
+    static final int CHECKCAST = 0xc0;
+    static final int WIDE = 0xc4;
+
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private final DataOutputStream methodsOut = new DataOutputStream(methods);
+    private int methodCount = 0;
+
+    private final int thisClass;
+    private final int superClass;
+
+    JvmClassWriter(String name, String superName) {
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+    }
+
+    Code newCode() {
+        return new Code();
+    }
+
+    void addMethod(String name, String descriptor, Code code) {
+        try {
+            code.resolveLabels();
+            methodsOut.writeShort(ACC_STATIC);
+            methodsOut.writeShort(utf8(name));
+            methodsOut.writeShort(utf8(descriptor));
+            methodsOut.writeShort(1);
+            methodsOut.writeShort(utf8("Code"));
+            byte[] bytes = code.bytes.toByteArray();
+            if (bytes.length > 65535) {
+                throw new RuntimeException("Method " + name + " is too large for the jvm backend");
+            }
+            methodsOut.writeInt(12 + bytes.length);
+            methodsOut.writeShort(code.maxStack);
+            methodsOut.writeShort(code.maxLocals);
+            methodsOut.writeInt(bytes.length);
+            methodsOut.write(bytes);
+            methodsOut.writeShort(0); // exception table
+            methodsOut.writeShort(0); // attributes
+            methodCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methodCount);
+            out.write(methods.toByteArray());
+            out.writeShort(0); // attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Constant pool
+
+    int utf8(String value) {
+        return constant("U" + value, 1, out -> out.writeUTF(value));
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, 1, out -> out.writeShort(name));
+    }
+
+    int string(String value) {
+        int text = utf8(value);
+        return constant("S" + value, 1, out -> out.writeShort(text));
+    }
+
+    int integer(int value) {
+        return constant("I" + value, 1, out -> out.writeInt(value));
+    }
+
+    int doubleConstant(double value) {
+        return constant("D" + Double.doubleToRawLongBits(value), 2, out -> out.writeDouble(value));
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + " " + descriptor, 1, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + owner + "." + name + descriptor, 1, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface PoolEntry {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(String key, int size, PoolEntry entry) {
+        Integer existing = poolIndexes.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            poolOut.writeByte(tag(key.charAt(0)));
+            entry.write(poolOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int index = poolCount;
+        poolCount += size;
+        poolIndexes.put(key, index);
+        return index;
+    }
+
+    private static int tag(char kind) {
+        switch (kind) {
+            case 'U': return 1;
+            case 'I': return 3;
+            case 'D': return 6;
+            case 'C': return 7;
+            case 'S': return 8;
+            case 'M': return 10;
+            case 'N': return 12;
+            default: throw new IllegalArgumentException("Unknown constant kind: " + kind);
+        }
+    }
+
+    // Bytecode for one method, tracking the stack depth as it is emitted
+    final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int stack = 0;
+        int maxStack = 0;
+        int maxLocals = 0;
+
+        void reserveLocals(int count) {
+            maxLocals = Math.max(maxLocals, count);
+        }
+
+        void op(int opcode, int stackDelta) {
+            bytes.write(opcode);
+            adjust(stackDelta);
+        }
+
+        void local(int opcode, int index, int stackDelta) {
+            if (index > 255) {
+                bytes.write(WIDE);
+                bytes.write(opcode);
+                writeShort(index);
+            } else {
+                bytes.write(opcode);
+                bytes.write(index);
+            }
+            adjust(stackDelta);
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                bytes.write(BIPUSH);
+                bytes.write(value);
+                adjust(1);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                bytes.write(SIPUSH);
+                writeShort(value);
+                adjust(1);
+            } else {
+                constant(integer(value), 1);
+            }
+        }
+
+        void constant(int index, int stackDelta) {
+            if (index <= 255) {
+                bytes.write(LDC);
+                bytes.write(index);
+            } else {
+                bytes.write(LDC_W);
+                writeShort(index);
+            }
+            adjust(stackDelta);
+        }
+
+        void constant2(int index) {
+            bytes.write(LDC2_W);
+            writeShort(index);
+            adjust(2);
+        }
+
+        void invoke(int opcode, String owner, String name, String descriptor, int stackDelta) {
+            bytes.write(opcode);
+            writeShort(methodRef(owner, name, descriptor));
+            adjust(stackDelta);
+        }
+
+        void type(int opcode, String internalName, int stackDelta) {
+            bytes.write(opcode);
+            writeShort(classRef(internalName));
+            adjust(stackDelta);
+        }
+
+        Label newLabel() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        void bind(Label label) {
+            label.position = bytes.size();
+        }
+
+        void jump(int opcode, Label target, int stackDelta) {
+            target.fixups.add(bytes.size());
+            bytes.write(opcode);
+            writeShort(0);
+            adjust(stackDelta);
+        }
+
+        private void resolveLabels() {
+            byte[] code = bytes.toByteArray();
+            for (Label label : labels) {
+                for (int at : label.fixups) {
+                    int offset = label.position - at;
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new RuntimeException("Branch too far for the jvm backend");
+                    }
+                    code[at + 1] = (byte) (offset >> 8);
+                    code[at + 2] = (byte) offset;
+                }
+            }
+            bytes.reset();
+            bytes.write(code, 0, code.length);
+        }
+
+        private void writeShort(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+
+        private void adjust(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+    }
+
+    static final class Label {
+        int position = -1;
+        final List<Integer> fixups = new ArrayList<>();
+    }
+}
@@ -0,0 +1,224 @@
+import java.io.*;
+import java.nio.CharBuffer;
+import java.util.*;
+
+// Lexer
+// Reads either an in-memory source or, for large files, a Reader that it
+// buffers itself. nextToken() scans one token at a time; tokenizeCompact()
+// and tokenize() scan a whole in-memory source up front.
+class Lexer {
+    private CharSequence input;
+    private int pos = 0;
+    private static final String[] keywords = {
+        "WOW", "if", "else", "while", "print", "for", "in", "range", 
+        "function", "return", "input"
+    };
+    private static final TokenType[] keywordTypes = {
+        TokenType.WOW, TokenType.IF, TokenType.ELSE, TokenType.WHILE, TokenType.PRINT, TokenType.FOR,
+        TokenType.IN, TokenType.RANGE, TokenType.FUNCTION, TokenType.RETURN, TokenType.INPUT
+    };
+
+    // input holds the characters from offset up to limit. When reading from
+    // a Reader, the window is refilled on demand, keeping the current token
+    // from mark onwards.
+    private Reader reader;
+    private char[] window;
+    private int offset = 0;
+    private int limit;
+    private int mark = 0;
+
+    // Range of the last token returned by nextToken(); excludes the quotes of a STRING
+    int tokenStart;
+    int tokenEnd;
+
+    Lexer(CharSequence input) {
+        this.input = input;
+        this.limit = input.length();
+    }
+
+    Lexer(Reader reader) {
+        this.reader = reader;
+        this.window = new char[8192];
+        this.input = "";
+        this.limit = 0;
+    }
+
+    private char peek() {
+        return pos < limit || fill() ? input.charAt(pos - offset) : '\0';
+    }
+
+    private void advance() {
+        pos++;
+    }
+
+    private boolean atEnd() {
+        return pos >= limit && !fill();
+    }
+
+    // Reads more characters from the reader, returns false at end of input
+    private boolean fill() {
+        if (reader == null) {
+            return false;
+        }
+        int keepFrom = mark - offset;
+        int kept = limit - mark;
+        if (keepFrom > 0) {
+            System.arraycopy(window, keepFrom, window, 0, kept);
+        } else if (kept == window.length) {
+            window = Arrays.copyOf(window, window.length * 2);
+        }
+        offset = mark;
+        try {
+            int read = reader.read(window, kept, window.length - kept);
+            if (read < 0) {
+                reader.close();
+                reader = null;
+                return false;
+            }
+            limit = offset + kept + read;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        input = CharBuffer.wrap(window, 0, limit - offset);
+        return true;
+    }
+
+    List<Token> tokenize() {
+        return tokenizeCompact().toList();
+    }
+
+    // Scans the whole input into a TokenStream of offsets, without building
+    // a String or Token per token. Only for in-memory sources.
+    TokenStream tokenizeCompact() {
+        if (window != null) {
+            throw new IllegalStateException("tokenizeCompact needs an in-memory source");
+        }
+        PhaeEvents.LexEvent event = new PhaeEvents.LexEvent();
+        event.begin();
+        TokenStream tokens = new TokenStream(input, input.length() / 4 + 16);
+        TokenType type;
+        do {
+            type = nextToken();
+            tokens.add(type, tokenStart, tokenEnd);
+        } while (type != TokenType.EOF);
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceLength = input.length();
+            event.tokenCount = tokens.size();
+            event.commit();
+        }
+        return tokens;
+    }
+
+    // Text of the last token returned by nextToken()
+    String tokenText() {
+        return input.subSequence(tokenStart - offset, tokenEnd - offset).toString();
+    }
+
+    char tokenFirstChar() {
+        return input.charAt(tokenStart - offset);
+    }
+
+    TokenType nextToken() {
+        while (true) {
+            mark = pos;
+            if (atEnd()) {
+                tokenStart = tokenEnd = pos;
+                return TokenType.EOF;
+            }
+            char current = peek();
+            int start = pos;
+            TokenType type;
+            if (Character.isWhitespace(current)) {
+                advance();
+                continue;
+            } else if (Character.isLetter(current)) {
+                while (Character.isLetterOrDigit(peek())) {
+                    advance();
+                }
+                type = keywordType(start, pos);
+            } else if (Character.isDigit(current)) {
+                boolean hasDot = false;
+            
+                while (Character.isDigit(peek()) || (peek() == '.' && !hasDot)) {
+                    if (peek() == '.') hasDot = true;
+                    advance();
+                }
+            
+                // If the number contains a dot, it's a FLOAT, otherwise it's an INTEGER
+                type = hasDot ? TokenType.FLOAT : TokenType.NUMBER;
+            } else if (current == '"') {
+                advance(); // Skip opening quote
+                start = pos;
+                while (peek() != '"' && peek() != '\0') {
+                    advance();
+                }
+                if (peek() == '"') {
+                    tokenStart = start;
+                    tokenEnd = pos;
+                    advance(); // Skip closing quote
+                    return TokenType.STRING;
+                } else {
+                    throw new RuntimeException("Unterminated string");
+                }
+            } else {
+                switch (current) {
+                    case '=':
+                        advance();
+                        if (peek() == '=') {
+                            advance();
+                            type = TokenType.OPERATOR;
+                        } else {
+                            type = TokenType.ASSIGN;
+                        }
+                        break;
+                    case '>': case '<':
+                        advance();
+                        if (peek() == '=') {
+                            advance();
+                        }
+                        type = TokenType.OPERATOR;
+                        break;
+                    case '!':
+                        advance();
+                        if (peek() == '=') {
+                            advance();
+                            type = TokenType.OPERATOR;
+                        } else {
+                            throw new RuntimeException("Unexpected character: !");
+                        }
+                        break;
+                    case '+': case '-': case '*': case '/': case '%':
+                        advance();
+                        type = TokenType.OPERATOR;
+                        break;
+                    case ';': advance(); type = TokenType.SEMICOLON; break;
+                    case '(': advance(); type = TokenType.LEFT_PAREN; break;
+                    case ')': advance(); type = TokenType.RIGHT_PAREN; break;
+                    case '{': advance(); type = TokenType.LEFT_BRACE; break;
+                    case '}': advance(); type = TokenType.RIGHT_BRACE; break;
+                    case ',': advance(); type = TokenType.COMMA; break;
+                    case '[': advance(); type = TokenType.LEFT_BRACKET; break;
+                    case ']': advance(); type = TokenType.RIGHT_BRACKET; break;
+                    case ':': advance(); type = TokenType.COLON; break;
+                    default: throw new RuntimeException("Unexpected character: " + current);
+                }
+            }
+            tokenStart = start;
+            tokenEnd = pos;
+            return type;
+        }
+    }
+
+    private TokenType keywordType(int start, int end) {
+        int length = end - start;
+        for (int k = 0; k < keywords.length; k++) {
+            String keyword = keywords[k];
+            if (keyword.length() != length) continue;
+            int i = 0;
+            while (i < length && keyword.charAt(i) == input.charAt(start - offset + i)) i++;
+            if (i == length) return keywordTypes[k];
+        }
+        return TokenType.IDENTIFIER;
+    }
+}
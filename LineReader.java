@@ -0,0 +1,161 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Buffered line reader over a byte stream. Everything that reads standard
+// input shares one instance, so bytes one reader buffered ahead are never
+// lost to another. Lines end at \n, with a trailing \r dropped; the last
+// line needs no terminator. Not thread-safe.
+final class LineReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static LineReader standardInput;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    // The current line is line[lineStart, lineStart + lineLength); it points
+    // into buffer unless the line crossed a refill and was copied to spill
+    private byte[] spill = new byte[256];
+    private byte[] line;
+    private int lineStart;
+    private int lineLength;
+
+    LineReader(InputStream in) {
+        this.in = in;
+    }
+
+    static synchronized LineReader standardInput() {
+        if (standardInput == null) {
+            standardInput = new LineReader(System.in);
+        }
+        return standardInput;
+    }
+
+    // The next line, or null at the end of input
+    String readLine() {
+        if (!nextLine()) {
+            return null;
+        }
+        return new String(line, lineStart, lineLength, StandardCharsets.UTF_8);
+    }
+
+    // The next line as a record (see record()), or null at the end of input
+    Object readRecord() {
+        if (!nextLine()) {
+            return null;
+        }
+        return record(line, lineStart, lineLength);
+    }
+
+    // UTF-8 bytes as an Integer when Integer.parseInt would accept them,
+    // otherwise as a String. ASCII numbers are parsed straight from the
+    // bytes without making a String.
+    static Object record(byte[] bytes, int start, int length) {
+        int end = start + length;
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (i < end) {
+            // Accumulated negatively, like Integer.parseInt, so MIN_VALUE fits
+            int min = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            int value = 0;
+            for (; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9 || value < min / 10) {
+                    break;
+                }
+                value *= 10;
+                if (value < min + digit) {
+                    break;
+                }
+                value -= digit;
+            }
+            if (i == end) {
+                return negative ? value : -value;
+            }
+        }
+        String text = new String(bytes, start, length, StandardCharsets.UTF_8);
+        for (i = start; i < end; i++) {
+            if (bytes[i] < 0) {
+                // parseInt also accepts non-ASCII digits
+                try {
+                    return Integer.parseInt(text);
+                } catch (NumberFormatException e) {
+                    return text;
+                }
+            }
+        }
+        return text;
+    }
+
+    // Finds the next line and sets line, lineStart and lineLength
+    private boolean nextLine() {
+        int spilled = 0;
+        while (true) {
+            for (int i = position; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    if (spilled == 0) {
+                        setLine(buffer, position, i - position);
+                    } else {
+                        spilled = spill(spilled, i);
+                        setLine(spill, 0, spilled);
+                    }
+                    position = i + 1;
+                    return true;
+                }
+            }
+            // No terminator yet: keep what there is and read more
+            spilled = spill(spilled, limit);
+            position = limit;
+            if (!fill()) {
+                if (spilled == 0) {
+                    return false;
+                }
+                setLine(spill, 0, spilled);
+                return true;
+            }
+        }
+    }
+
+    // Appends buffer[position, end) to the spill and returns its new length
+    private int spill(int spilled, int end) {
+        int count = end - position;
+        if (spilled + count > spill.length) {
+            spill = java.util.Arrays.copyOf(spill, Math.max(spill.length * 2, spilled + count));
+        }
+        System.arraycopy(buffer, position, spill, spilled, count);
+        return spilled + count;
+    }
+
+    private void setLine(byte[] bytes, int start, int length) {
+        if (length > 0 && bytes[start + length - 1] == '\r') {
+            length--;
+        }
+        line = bytes;
+        lineStart = start;
+        lineLength = length;
+    }
+
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        try {
+            int count = in.read(buffer, 0, buffer.length);
+            if (count <= 0) {
+                eof = true;
+                return false;
+            }
+            position = 0;
+            limit = count;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,3 @@
+// lines() node: the records of the program's input, one per line
+class LinesExpr extends ASTNode {
+}
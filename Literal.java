@@ -0,0 +1,8 @@
+// Literal node: a NUMBER/FLOAT/STRING value decoded once, ahead of execution
+class Literal extends ASTNode {
+    Object value;
+
+    Literal(Object value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+// Reader over a memory-mapped source file. The file is mapped one region at
+// a time and decoded as UTF-8 straight from the mapping, so a large script is
+// never copied onto the heap as a whole.
+final class MappedFileReader extends Reader {
+    private static final long REGION_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long regionStart;
+    private MappedByteBuffer region;
+    private boolean flushed = false;
+
+    MappedFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        map(0);
+    }
+
+    long size() {
+        return size;
+    }
+
+    private void map(long start) throws IOException {
+        regionStart = start;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (flushed) {
+            return -1;
+        }
+        CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+        while (out.position() == offset) {
+            boolean lastRegion = regionStart + region.limit() >= size;
+            CoderResult result = decoder.decode(region, out, lastRegion);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                break;
+            }
+            if (!lastRegion) {
+                // Continue from the first undecoded byte, which also carries
+                // over a character split across the region boundary
+                map(regionStart + region.position());
+            } else {
+                decoder.flush(out);
+                flushed = true;
+                break;
+            }
+        }
+        int read = out.position() - offset;
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
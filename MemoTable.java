@@ -0,0 +1,122 @@
+// Result cache for one pure function, keyed on its argument values. Only
+// calls whose arguments are all ints or doubles are cached; each argument is
+// stored as raw long bits next to a mask of which ones were doubles, so
+// f(1) and f(1.0) stay apart and lookups create no key objects. The table
+// is set-associative with two ways per set: a new entry replaces the older
+// of the two, which bounds the size without any bookkeeping per hit.
+final class MemoTable {
+    private final String name;
+    private final int arity;
+    private final int setMask;
+    private final long[] keys;
+    private final int[] doubleMasks;
+    private final Object[] values;
+    private final boolean[] used;
+    private final boolean[] newer;  // Per set: true when way 1 was filled last
+
+    long hits;
+    long misses;
+    long evictions;
+    long bypassed;
+
+    // capacity is rounded up to a power of two, at least 2
+    MemoTable(String name, int arity, int capacity) {
+        int entries = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        int sets = entries / 2;
+        this.name = name;
+        this.arity = arity;
+        this.setMask = sets - 1;
+        this.keys = new long[entries * Math.max(1, arity)];
+        this.doubleMasks = new int[entries];
+        this.values = new Object[entries];
+        this.used = new boolean[entries];
+        this.newer = new boolean[sets];
+    }
+
+    // Arguments are in args[0..arity). Returns the cached entry's index, or
+    // -1 on a miss, or -2 when the arguments cannot be cached.
+    int find(Object[] args) {
+        if (arity > 32) {
+            bypassed++;
+            return -2;
+        }
+        int mask = 0;
+        for (int i = 0; i < arity; i++) {
+            Object arg = args[i];
+            if (arg instanceof Double) {
+                mask |= 1 << i;
+            } else if (!(arg instanceof Integer)) {
+                bypassed++;
+                return -2;
+            }
+        }
+        int set = hash(args) & setMask;
+        for (int way = 0; way < 2; way++) {
+            int entry = set * 2 + way;
+            if (used[entry] && doubleMasks[entry] == mask && matches(entry, args)) {
+                hits++;
+                return entry;
+            }
+        }
+        misses++;
+        return -1;
+    }
+
+    Object value(int entry) {
+        return values[entry];
+    }
+
+    // Only for arguments find() accepted
+    void put(Object[] args, Object value) {
+        int set = hash(args) & setMask;
+        int way = used[set * 2] ? (used[set * 2 + 1] ? (newer[set] ? 0 : 1) : 1) : 0;
+        int entry = set * 2 + way;
+        if (used[entry]) {
+            evictions++;
+        }
+        int mask = 0;
+        int base = entry * arity;
+        for (int i = 0; i < arity; i++) {
+            keys[base + i] = bits(args[i]);
+            if (args[i] instanceof Double) {
+                mask |= 1 << i;
+            }
+        }
+        doubleMasks[entry] = mask;
+        values[entry] = value;
+        used[entry] = true;
+        newer[set] = way == 1;
+    }
+
+    String report() {
+        return String.format("memo %-16s %10d hits %10d misses %8d evictions %8d uncacheable%n",
+            name, hits, misses, evictions, bypassed);
+    }
+
+    private boolean matches(int entry, Object[] args) {
+        int base = entry * arity;
+        for (int i = 0; i < arity; i++) {
+            if (keys[base + i] != bits(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whole doubles only differ in their high bits, so the result is mixed
+    // down before the set is picked from the low bits
+    private int hash(Object[] args) {
+        long hash = 0;
+        for (int i = 0; i < arity; i++) {
+            hash = (hash ^ bits(args[i])) * 0x9E3779B97F4A7C15L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    private static long bits(Object arg) {
+        return arg instanceof Integer i ? i : Double.doubleToRawLongBits((Double) arg);
+    }
+}
@@ -0,0 +1,51 @@
+// Phae bytecode: a register-based instruction set. Each function has a register
+// file whose first registers are its frame slots (parameters first), followed
+// by temporaries; range loops also get int registers for index, end and step.
+// Instructions are variable length, an opcode followed by its operands, stored
+// in one int[] with a shared constant pool.
+final class Opcode {
+    private Opcode() {}
+
+    static final int CONST = 0;       // a k        r[a] = constants[k]
+    static final int MOVE = 1;        // a b        r[a] = r[b]
+    static final int ADD = 2;         // a b c      r[a] = r[b] + r[c]
+    static final int SUB = 3;
+    static final int MUL = 4;
+    static final int DIV = 5;
+    static final int MOD = 6;
+    static final int EQ = 7;
+    static final int NE = 8;
+    static final int GT = 9;
+    static final int LT = 10;
+    static final int GE = 11;
+    static final int LE = 12;
+    static final int JUMP = 13;       // t          pc = t
+    static final int JUMP_FALSE = 14; // a t        if !isTrue(r[a]) pc = t
+    static final int TO_INT = 15;     // i a        ints[i] = (int) r[a]
+    static final int FOR_TEST = 16;   // i t        if the range at ints[i..i+2] is done, pc = t
+    static final int FOR_SET = 17;    // a i        r[a] = ints[i]
+    static final int FOR_STEP = 18;   // i          ints[i] += ints[i + 2]
+    static final int PRINT = 19;      // a
+    static final int INPUT = 20;      // a k        r[a] = input line, prompt names constants[k]
+    static final int DEFINE = 21;     // n f        name n now calls function f
+    static final int CHECK_CALL = 22; // n argc     name n is defined and takes argc arguments
+    static final int CALL = 23;       // a n base   r[a] = call name n with args r[base..]
+    static final int RETURN = 24;     // a          return r[a]
+    static final int RETURN_NULL = 25;
+    static final int HALT = 26;
+    static final int CHECK_DEFINED = 27; // n       name n is defined; arity was checked at link time
+    static final int TAIL_CALL = 28;  // n base     return the result of calling name n with args r[base..]
+    static final int CHECK_ASSIGNED = 29; // a k    r[a] is not Values.UNASSIGNED; constants[k] names it
+
+    // Operand count per opcode
+    static final int[] OPERANDS = {
+        2, 2, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 1, 2, 2, 2, 2, 1, 1, 2, 2, 2, 3, 1, 0, 0, 1, 2, 2
+    };
+
+    static final String[] NAMES = {
+        "CONST", "MOVE", "ADD", "SUB", "MUL", "DIV", "MOD", "EQ", "NE", "GT", "LT", "GE", "LE",
+        "JUMP", "JUMP_FALSE", "TO_INT", "FOR_TEST", "FOR_SET", "FOR_STEP", "PRINT", "INPUT",
+        "DEFINE", "CHECK_CALL", "CALL", "RETURN", "RETURN_NULL", "HALT", "CHECK_DEFINED", "TAIL_CALL",
+        "CHECK_ASSIGNED"
+    };
+}
@@ -0,0 +1,28 @@
+
+// Where print statements write to. Engines flush the sink when a program ends
+// and before reading input, so a buffering sink never hides a prompt.
+interface OutputSink {
+    // Writes text without a line break, e.g. an input prompt
+    void print(String text);
+
+    void println(Object value);
+
+    default void println(int value) {
+        println((Object) value);
+    }
+
+    default void println(double value) {
+        println((Object) value);
+    }
+
+    default void println(boolean value) {
+        println((Object) value);
+    }
+
+    void flush();
+
+    // Buffered sink over the current System.out
+    static OutputSink standard() {
+        return new BufferedOutputSink(System.out, BufferedOutputSink.DEFAULT_FLUSH_SIZE);
+    }
+}
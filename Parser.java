@@ -0,0 +1,386 @@
+import java.util.*;
+
+// Parser
+class Parser {
+    private TokenSource tokens;
+    private int pos = 0;
+
+    Parser(List<Token> tokens) {
+        this(TokenStream.of(tokens));
+    }
+
+    Parser(TokenSource tokens) {
+        this.tokens = tokens;
+    }
+
+    List<ASTNode> parse() {
+        PhaeEvents.ParseEvent event = new PhaeEvents.ParseEvent();
+        event.begin();
+        List<ASTNode> nodes = parseProgram();
+        event.end();
+        if (event.shouldCommit()) {
+            event.tokenCount = pos + 1;
+            event.nodeCount = PhaeEvents.countNodes(nodes);
+            event.commit();
+        }
+        return nodes;
+    }
+    
+    private List<ASTNode> parseProgram() {
+        List<ASTNode> nodes = new ArrayList<>();
+        while (peekType() != TokenType.EOF) {
+            if (peekType() == TokenType.IF) {
+                nodes.add(parseIfStmt());
+            } else if (peekType() == TokenType.PRINT) {
+                nodes.add(parsePrintStmt());
+            } else if (peekType() == TokenType.INPUT) {
+                nodes.add(parseInputStmt());
+            } else if (peekType() == TokenType.FOR) {  
+                nodes.add(parseForLoop());
+            } else if (peekType() == TokenType.WHILE) {  
+                nodes.add(parseWhileLoop());
+            } else if (peekType() == TokenType.FUNCTION) {
+                nodes.add(parseFunctionDecl());
+            } else if (peekType() == TokenType.RETURN) {
+                nodes.add(parseReturnStmt());
+            } else if (peekType() == TokenType.IDENTIFIER) {
+                if (peekNextType() == TokenType.ASSIGN) {
+                    nodes.add(parseVarAssign());
+                } else if (peekNextType() == TokenType.LEFT_BRACKET) {
+                    nodes.add(parseIndexAssign());
+                } else if (peekNextType() == TokenType.LEFT_PAREN) {
+                    nodes.add(parseFunctionCall());
+                    consume(TokenType.SEMICOLON);
+                } else {
+                    throw new RuntimeException("Unexpected token after identifier: " + peekNextType());
+                }
+            } else {
+                throw new RuntimeException("Unexpected token: " + peekType());
+            }
+        }
+        return nodes;
+    }
+    
+    // Function declaration parsing
+    private ASTNode parseFunctionDecl() {
+        consume(TokenType.FUNCTION);
+        String name = tokens.text(consume(TokenType.IDENTIFIER));
+        
+        consume(TokenType.LEFT_PAREN);
+        List<String> parameters = new ArrayList<>();
+        
+        if (peekType() != TokenType.RIGHT_PAREN) {
+            do {
+                String param = tokens.text(consume(TokenType.IDENTIFIER));
+                parameters.add(param);
+                if (peekType() == TokenType.COMMA) {
+                    consume(TokenType.COMMA);
+                } else {
+                    break;
+                }
+            } while (true);
+        }
+        
+        consume(TokenType.RIGHT_PAREN);
+        List<ASTNode> body = parseBlock();
+        
+        return new FunctionDecl(name, parameters, body);
+    }
+    
+    // Function call parsing
+    private ASTNode parseFunctionCall() {
+        String name = tokens.text(consume(TokenType.IDENTIFIER));
+        consume(TokenType.LEFT_PAREN);
+        
+        List<ASTNode> arguments = new ArrayList<>();
+        if (peekType() != TokenType.RIGHT_PAREN) {
+            do {
+                arguments.add(parseExpression());
+                if (peekType() == TokenType.COMMA) {
+                    consume(TokenType.COMMA);
+                } else {
+                    break;
+                }
+            } while (true);
+        }
+        
+        consume(TokenType.RIGHT_PAREN);
+        return new FunctionCall(name, arguments);
+    }
+    
+    // Return statement parsing
+    private ASTNode parseReturnStmt() {
+        consume(TokenType.RETURN);
+        ASTNode value = parseExpression();
+        consume(TokenType.SEMICOLON);
+        return new ReturnStmt(value);
+    }
+
+    // for loop parsing
+    private ASTNode parseForLoop() {
+        consume(TokenType.FOR);
+        
+        // Parse the loop variable
+        String variable = tokens.text(consume(TokenType.IDENTIFIER));
+        
+        consume(TokenType.IN);
+        
+        // Parse the iterable: range(), lines() or an expression giving records
+        ASTNode iterable;
+        if (peekType() == TokenType.RANGE) {
+            iterable = parseRange();
+        } else if (peekType() == TokenType.IDENTIFIER && tokens.text(pos).equals("lines")) {
+            advance();
+            consume(TokenType.LEFT_PAREN);
+            consume(TokenType.RIGHT_PAREN);
+            iterable = new LinesExpr();
+        } else {
+            iterable = parseExpression();
+        }
+        
+        // Parse body
+        List<ASTNode> body = parseBlock();
+        
+        return new ForLoop(variable, iterable, body);
+    }
+    
+    // while loop parsing
+    private ASTNode parseWhileLoop() {
+        consume(TokenType.WHILE);
+        consume(TokenType.LEFT_PAREN);
+        ASTNode condition = parseExpression();
+        consume(TokenType.RIGHT_PAREN);
+        List<ASTNode> body = parseBlock();
+        return new WhileLoop(condition, body);
+    }
+
+    // range() parsing
+    private ASTNode parseRange() {
+        consume(TokenType.RANGE);
+        consume(TokenType.LEFT_PAREN);
+        
+        ASTNode start = parseExpression();
+        
+        ASTNode end = null;
+        if (peekType() == TokenType.COMMA) {
+            consume(TokenType.COMMA);
+            end = parseExpression();
+        }
+        
+        ASTNode step = null;
+        if (peekType() == TokenType.COMMA) {
+            consume(TokenType.COMMA);
+            step = parseExpression();
+        }
+        
+        consume(TokenType.RIGHT_PAREN);
+        
+        // If only one arg, it's the end (with implicit start at 0)
+        if (end == null) {
+            end = start;
+            start = new Expression("0", TokenType.NUMBER);
+        }
+        
+        // Default step is 1
+        if (step == null) {
+            step = new Expression("1", TokenType.NUMBER);
+        }
+        
+        return new RangeExpr(start, end, step);
+    }
+
+    // variable assignment parsing
+    private ASTNode parseVarAssign() {
+        String identifier = tokens.text(consume(TokenType.IDENTIFIER));
+        consume(TokenType.ASSIGN);
+        ASTNode expression = parseExpression();
+        consume(TokenType.SEMICOLON);
+        return new VarAssign(identifier, expression);
+    }
+
+    // array[index] = value;
+    private ASTNode parseIndexAssign() {
+        String identifier = tokens.text(consume(TokenType.IDENTIFIER));
+        consume(TokenType.LEFT_BRACKET);
+        ASTNode index = parseExpression();
+        consume(TokenType.RIGHT_BRACKET);
+        consume(TokenType.ASSIGN);
+        ASTNode expression = parseExpression();
+        consume(TokenType.SEMICOLON);
+        return new IndexAssign(identifier, index, expression);
+    }
+
+    // print statement parsing
+    private ASTNode parsePrintStmt() {
+        consume(TokenType.PRINT);
+        consume(TokenType.LEFT_PAREN);
+        ASTNode expression = parseExpression();
+        consume(TokenType.RIGHT_PAREN);
+        consume(TokenType.SEMICOLON);
+        return new PrintStmt(expression);
+    }
+
+    // if statement parsing
+    private ASTNode parseIfStmt() {
+        consume(TokenType.IF);
+        consume(TokenType.LEFT_PAREN);
+        ASTNode condition = parseExpression();
+        consume(TokenType.RIGHT_PAREN);
+        List<ASTNode> thenBranch = parseBlock();
+        List<ASTNode> elseBranch = new ArrayList<>();
+
+        if (peekType() == TokenType.ELSE) {
+            consume(TokenType.ELSE);
+            elseBranch = parseBlock();
+        }
+
+        return new IfStmt(condition, thenBranch, elseBranch);
+    }
+
+    private ASTNode parseInputStmt() {
+        consume(TokenType.INPUT);
+        consume(TokenType.LEFT_PAREN);
+        String identifier = tokens.text(consume(TokenType.IDENTIFIER));
+        consume(TokenType.RIGHT_PAREN);
+        consume(TokenType.SEMICOLON);
+        return new InputStmt(identifier);
+    }    
+
+    // block parsing
+    private List<ASTNode> parseBlock() {
+        consume(TokenType.LEFT_BRACE);
+        List<ASTNode> statements = new ArrayList<>();
+        
+        while (peekType() != TokenType.RIGHT_BRACE) {
+            if (peekType() == TokenType.IF) {
+                statements.add(parseIfStmt());
+            } else if (peekType() == TokenType.PRINT) {
+                statements.add(parsePrintStmt());
+            } else if (peekType() == TokenType.FOR) {
+                statements.add(parseForLoop());
+            } else if (peekType() == TokenType.RETURN) {
+                statements.add(parseReturnStmt());
+            } else if (peekType() == TokenType.INPUT) {
+                statements.add(parseInputStmt());
+            } else if (peekType() == TokenType.IDENTIFIER) {
+                if (peekNextType() == TokenType.ASSIGN) {
+                    statements.add(parseVarAssign());
+                } else if (peekNextType() == TokenType.LEFT_BRACKET) {
+                    statements.add(parseIndexAssign());
+                } else if (peekNextType() == TokenType.LEFT_PAREN) {
+                    statements.add(parseFunctionCall());
+                    consume(TokenType.SEMICOLON);
+                } else {
+                    throw new RuntimeException("Unexpected token after identifier in block: " + peekNextType());
+                }
+            } else {
+                throw new RuntimeException("Unexpected token in block: " + peekType());
+            }
+        }
+        
+        consume(TokenType.RIGHT_BRACE);
+        return statements;
+    }
+
+    private ASTNode parseExpression() {
+        ASTNode left = parsePrimary();
+        
+        while (peekType() == TokenType.OPERATOR) {
+            Token operator = tokens.token(consume(TokenType.OPERATOR));
+            ASTNode right = parsePrimary();
+            left = new BinaryExpr(left, operator, right);
+        }
+        
+        return left;
+    }
+
+    // A primary followed by any number of [index] suffixes
+    private ASTNode parsePrimary() {
+        ASTNode primary = parseAtom();
+        while (peekType() == TokenType.LEFT_BRACKET) {
+            advance();
+            ASTNode index = parseExpression();
+            consume(TokenType.RIGHT_BRACKET);
+            primary = new IndexExpr(primary, index);
+        }
+        return primary;
+    }
+
+    private ASTNode parseAtom() {
+        TokenType type = peekType();
+    
+        if (type == TokenType.NUMBER || type == TokenType.FLOAT) {
+            String value = tokens.text(pos);
+            advance();
+            return new Expression(value, type);
+        } else if (type == TokenType.STRING) {
+            String value = tokens.text(pos);
+            advance();
+            return new Expression(value, TokenType.STRING);
+        } else if (type == TokenType.IDENTIFIER) {
+            if (peekNextType() == TokenType.LEFT_PAREN) {
+                return parseFunctionCall();
+            }
+            String value = tokens.text(pos);
+            advance();
+            return new Expression(value, TokenType.IDENTIFIER);
+        } else if (type == TokenType.LEFT_PAREN) {
+            advance();
+            ASTNode expr = parseExpression();
+            consume(TokenType.RIGHT_PAREN);
+            return expr;
+        } else if (type == TokenType.LEFT_BRACKET) {
+            advance();
+            List<ASTNode> elements = new ArrayList<>();
+            if (peekType() != TokenType.RIGHT_BRACKET) {
+                elements.add(parseExpression());
+                while (peekType() == TokenType.COMMA) {
+                    advance();
+                    elements.add(parseExpression());
+                }
+            }
+            consume(TokenType.RIGHT_BRACKET);
+            return new ArrayLiteral(elements);
+        } else if (type == TokenType.LEFT_BRACE) {
+            advance();
+            List<ASTNode> keys = new ArrayList<>();
+            List<ASTNode> values = new ArrayList<>();
+            if (peekType() != TokenType.RIGHT_BRACE) {
+                do {
+                    if (!keys.isEmpty()) {
+                        advance();
+                    }
+                    keys.add(parseExpression());
+                    consume(TokenType.COLON);
+                    values.add(parseExpression());
+                } while (peekType() == TokenType.COMMA);
+            }
+            consume(TokenType.RIGHT_BRACE);
+            return new DictLiteral(keys, values);
+        } else {
+            throw new RuntimeException("Unexpected token: " + type);
+        }
+    }
+    
+
+    // Consumes a token of the expected type and returns its index in the stream
+    private int consume(TokenType expected) {
+        TokenType type = tokens.type(pos);
+        if (type != expected) {
+            throw new RuntimeException("Expected " + expected + " but found " + type);
+        }
+        return pos++;
+    }
+
+    private TokenType peekType() {
+        return tokens.type(pos);
+    }
+
+    private TokenType peekNextType() {
+        return peekType() == TokenType.EOF ? TokenType.EOF : tokens.type(pos + 1);
+    }
+
+    private void advance() {
+        pos++;
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.*;
+
+// Fixed-length array value. Elements are stored unboxed, in an int[] until
+// the first non-int element is stored and in a double[] from then on, so
+// numeric loops over arrays allocate nothing per element. Indexes are ints,
+// or doubles with a whole value since Phae arithmetic produces doubles.
+final class PhaeArray {
+    private int[] ints;
+    private double[] doubles;   // Non-null once the array holds doubles
+    private final int length;
+
+    private PhaeArray(int[] ints, double[] doubles, int length) {
+        this.ints = ints;
+        this.doubles = doubles;
+        this.length = length;
+    }
+
+    static PhaeArray ofInts(int length) {
+        return new PhaeArray(new int[length], null, length);
+    }
+
+    static PhaeArray ofDoubles(int length) {
+        return new PhaeArray(null, new double[length], length);
+    }
+
+    // Elements must all be numbers
+    static PhaeArray of(List<Object> values) {
+        boolean allInts = true;
+        for (Object value : values) {
+            if (value instanceof Double) {
+                allInts = false;
+            } else if (!(value instanceof Integer)) {
+                throw new RuntimeException("Array elements must be numbers, not " + typeName(value));
+            }
+        }
+        PhaeArray array = allInts ? ofInts(values.size()) : ofDoubles(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            array.set(i, values.get(i));
+        }
+        return array;
+    }
+
+    static boolean isBuiltin(String name) {
+        return name.equals("array") || name.equals("len");
+    }
+
+    //   array(size)        an int array of zeros
+    //   array(size, fill)  an array with every element set to fill
+    //   len(value)         the length of an array, a dictionary or a string
+    static Object call(String name, List<Object> arguments) {
+        if (name.equals("len")) {
+            if (arguments.size() != 1) {
+                throw new RuntimeException("Expected 1 arguments but got " + arguments.size());
+            }
+            Object value = arguments.get(0);
+            if (value instanceof PhaeArray array) {
+                return array.length;
+            } else if (value instanceof PhaeDict dict) {
+                return dict.size();
+            } else if (Rope.isText(value)) {
+                return value.toString().length();
+            }
+            throw new RuntimeException("len() needs an array, a dictionary or a string, not " + typeName(value));
+        }
+        if (arguments.size() != 1 && arguments.size() != 2) {
+            throw new RuntimeException("Expected 1 or 2 arguments but got " + arguments.size());
+        }
+        int size = toIndex(arguments.get(0));
+        if (size < 0) {
+            throw new RuntimeException("Array size must not be negative: " + size);
+        }
+        if (arguments.size() == 1) {
+            return ofInts(size);
+        }
+        Object fill = arguments.get(1);
+        if (fill instanceof Integer i) {
+            PhaeArray array = ofInts(size);
+            Arrays.fill(array.ints, i);
+            return array;
+        } else if (fill instanceof Double d) {
+            PhaeArray array = ofDoubles(size);
+            Arrays.fill(array.doubles, d);
+            return array;
+        }
+        throw new RuntimeException("Array elements must be numbers, not " + typeName(fill));
+    }
+
+    int length() {
+        return length;
+    }
+
+    boolean holdsDoubles() {
+        return doubles != null;
+    }
+
+    // Only while !holdsDoubles()
+    int intAt(int index) {
+        return ints[check(index)];
+    }
+
+    // Only while holdsDoubles()
+    double doubleAt(int index) {
+        return doubles[check(index)];
+    }
+
+    Object get(int index) {
+        return doubles != null ? (Object) doubles[check(index)] : (Object) ints[check(index)];
+    }
+
+    void set(int index, int value) {
+        if (doubles != null) {
+            doubles[check(index)] = value;
+        } else {
+            ints[check(index)] = value;
+        }
+    }
+
+    void set(int index, double value) {
+        check(index);
+        if (doubles == null) {
+            widen();
+        }
+        doubles[index] = value;
+    }
+
+    void set(int index, Object value) {
+        if (value instanceof Integer i) {
+            set(index, i.intValue());
+        } else if (value instanceof Double d) {
+            set(index, d.doubleValue());
+        } else {
+            throw new RuntimeException("Array elements must be numbers, not " + typeName(value));
+        }
+    }
+
+    // Integer, or a Double with a whole value
+    static int toIndex(Object value) {
+        if (value instanceof Integer i) {
+            return i;
+        } else if (value instanceof Double d && d == (int) d.doubleValue()) {
+            return (int) d.doubleValue();
+        }
+        throw new RuntimeException("Array index must be a whole number, not " + value);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joined = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < length; i++) {
+            joined.add(String.valueOf(get(i)));
+        }
+        return joined.toString();
+    }
+
+    private void widen() {
+        doubles = new double[length];
+        for (int i = 0; i < length; i++) {
+            doubles[i] = ints[i];
+        }
+        ints = null;
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= length) {
+            throw new RuntimeException("Array index " + index + " out of bounds for length " + length);
+        }
+        return index;
+    }
+
+    static String typeName(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof PhaeArray) {
+            return "array";
+        }
+        return Rope.isText(value) ? "string" : value.getClass().getSimpleName().toLowerCase();
+    }
+}
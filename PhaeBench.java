@@ -0,0 +1,291 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Micro benchmarks for the Phae pipeline. Each benchmark is warmed up, then
+// measured over several timed iterations; the report gives the mean time per
+// operation with its spread, and the bytes allocated per operation and per
+// second by the benchmark thread.
+// Usage: java PhaeBench [name regex]
+public class PhaeBench {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps results reachable so the JIT cannot drop the work
+    static volatile Object sink;
+
+    public static void main(String[] args) {
+        Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+
+        Map<String, Runnable> benchmarks = new LinkedHashMap<>();
+
+        String large = largeSource(20_000);
+        benchmarks.put("lexer.tokenize", () -> sink = new Lexer(large).tokenize());
+        benchmarks.put("lexer.tokenizeCompact", () -> sink = new Lexer(large).tokenizeCompact());
+
+        TokenStream wide = new Lexer(large).tokenizeCompact();
+        TokenStream deep = new Lexer(deepSource(200)).tokenizeCompact();
+        benchmarks.put("parser.wide", () -> sink = new Parser(wide).parse());
+        benchmarks.put("parser.deep", () -> sink = new Parser(deep).parse());
+
+        String counter = "x = 0;\n"
+                       + "for i in range(100000) {\n"
+                       + "    x = x + 1;\n"
+                       + "}\n";
+        benchmarks.put("interpreter.literals.parsed", interpreter(counter, false));
+        benchmarks.put("interpreter.literals.materialized", interpreter(counter, true));
+
+        benchmarks.put("interpreter.fib", interpreter(
+            "function fib(n) {\n"
+          + "    if (n < 2) {\n"
+          + "        return n;\n"
+          + "    }\n"
+          + "    return fib(n - 1) + fib(n - 2);\n"
+          + "}\n"
+          + "r = fib(20);\n", true));
+        benchmarks.put("interpreter.nestedRange", interpreter(
+            "x = 0;\n"
+          + "c = 0;\n"
+          + "for i in range(100) {\n"
+          + "    for j in range(1000) {\n"
+          + "        x = i * 2 + j * 3 - 1;\n"
+          + "        if ((i % 7) == (j % 7)) {\n"
+          + "            c = c + 1;\n"
+          + "        }\n"
+          + "    }\n"
+          + "}\n", true));
+        benchmarks.put("interpreter.while", interpreter(
+            "i = 0;\n"
+          + "while (i < 100000) {\n"
+          + "    i = i + 1;\n"
+          + "}\n", true));
+        benchmarks.put("interpreter.print", interpreter(
+            "for i in range(100000) {\n"
+          + "    print(i);\n"
+          + "}\n", true));
+
+        benchmarks.put("interpreter.arrayKernel", interpreter(
+            "a = array(100000, 0.5);\n"
+          + "for i in range(100000) {\n"
+          + "    a[i] = a[i] * 3;\n"
+          + "}\n"
+          + "s = 0.0;\n"
+          + "for x in a {\n"
+          + "    s = s + x;\n"
+          + "}\n", true));
+
+        String data = dataFile(100_000);
+        benchmarks.put("interpreter.readColumn", interpreter(
+            "s = 0;\n"
+          + "for v in readColumn(\"" + data + "\", 1) {\n"
+          + "    s = s + v;\n"
+          + "}\n", true));
+        benchmarks.put("interpreter.readLines", interpreter(
+            "n = 0;\n"
+          + "for line in readLines(\"" + data + "\") {\n"
+          + "    n = n + 1;\n"
+          + "}\n", true));
+
+        // Word counting, against java.util.HashMap doing the same lookups and stores
+        Random random = new Random(42);
+        String[] vocabulary = vocabulary(random, 5_000);
+        int[] wordIds = new int[200_000];
+        String[] words = new String[wordIds.length];
+        for (int i = 0; i < wordIds.length; i++) {
+            // Skewed towards the first words, as in real text
+            wordIds[i] = (int) (vocabulary.length * Math.pow(random.nextDouble(), 3));
+            words[i] = new String(vocabulary[wordIds[i]]);
+        }
+        benchmarks.put("dict.wordCount.PhaeDict", () -> {
+            PhaeDict counts = new PhaeDict();
+            for (String word : words) {
+                int entry = counts.find(word);
+                counts.put(word, entry < 0 ? 1 : (Integer) counts.valueAt(entry) + 1);
+            }
+            sink = counts;
+        });
+        benchmarks.put("dict.wordCount.HashMap", () -> {
+            Map<Object, Object> counts = new HashMap<>();
+            for (String word : words) {
+                Object count = counts.get(word);
+                counts.put(word, count == null ? 1 : (Integer) count + 1);
+            }
+            sink = counts;
+        });
+        benchmarks.put("dict.intCount.PhaeDict", () -> {
+            PhaeDict counts = new PhaeDict();
+            for (int id : wordIds) {
+                int entry = counts.findInt(id);
+                counts.putInt(id, entry < 0 ? 1 : (Integer) counts.valueAt(entry) + 1);
+            }
+            sink = counts;
+        });
+        benchmarks.put("dict.intCount.HashMap", () -> {
+            Map<Object, Object> counts = new HashMap<>();
+            for (int id : wordIds) {
+                Object count = counts.get(id);
+                counts.put(id, count == null ? 1 : (Integer) count + 1);
+            }
+            sink = counts;
+        });
+        String wordData = linesFile(words);
+        benchmarks.put("interpreter.wordCount", interpreter(
+            "counts = {};\n"
+          + "for word in readLines(\"" + wordData + "\") {\n"
+          + "    counts[word] = get(counts, word, 0) + 1;\n"
+          + "}\n", true));
+
+        // Growing a string in a loop, as + does it and as naive String concatenation would
+        benchmarks.put("concat.Rope", () -> {
+            Object text = "";
+            for (int i = 0; i < 20_000; i++) {
+                text = Values.add(Values.add(text, i), ",");
+            }
+            sink = text.toString();
+        });
+        benchmarks.put("concat.String", () -> {
+            String text = "";
+            for (int i = 0; i < 20_000; i++) {
+                text = text + i + ",";
+            }
+            sink = text;
+        });
+        benchmarks.put("interpreter.concat", interpreter(
+            "report = \"\";\n"
+          + "for i in range(20000) {\n"
+          + "    report = report + \"row \" + i + \": \" + (i * 0.5) + \"; \";\n"
+          + "}\n"
+          + "print(report);\n", true));
+
+        System.out.printf("%-36s %12s %10s %12s %10s%n", "benchmark", "ns/op", "+-", "B/op", "MB/s");
+        for (Map.Entry<String, Runnable> benchmark : benchmarks.entrySet()) {
+            if (filter.matcher(benchmark.getKey()).find()) {
+                measure(benchmark.getKey(), benchmark.getValue());
+            }
+        }
+    }
+
+    // Runs the operation in timed iterations and prints one report line
+    private static void measure(String name, Runnable operation) {
+        double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++) {
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long elapsed;
+            long count = 0;
+            do {
+                operation.run();
+                count++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ITERATION_NANOS);
+            long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+            if (iteration >= WARMUP_ITERATIONS) {
+                nanosPerOp[iteration - WARMUP_ITERATIONS] = (double) elapsed / count;
+                ops += count;
+                nanos += elapsed;
+                bytes += allocated;
+            }
+        }
+
+        double mean = (double) nanos / ops;
+        double variance = 0;
+        for (double value : nanosPerOp) {
+            variance += (value - mean) * (value - mean);
+        }
+        double spread = Math.sqrt(variance / (MEASURED_ITERATIONS - 1));
+        System.out.printf("%-36s %12.0f %10.0f %12.0f %10.1f%n",
+            name, mean, spread, (double) bytes / ops, bytes / (nanos / 1e9) / (1 << 20));
+    }
+
+    // One interpreter run per operation. Output goes to a discarding sink,
+    // so print-heavy scripts measure the sink and not the terminal.
+    private static Runnable interpreter(String source, boolean materialize) {
+        List<ASTNode> ast = new Parser(new Lexer(source).tokenizeCompact()).parse();
+        if (materialize) {
+            new ConstantMaterializer().materialize(ast);
+        }
+        int globalSlots = new Resolver().resolve(ast);
+        OutputSink out = new BufferedOutputSink(OutputStream.nullOutputStream(), BufferedOutputSink.DEFAULT_FLUSH_SIZE);
+        return () -> new Interpreter(out).interpret(ast, globalSlots);
+    }
+
+    // A temporary CSV file of id,int,double rows, deleted on exit
+    private static String dataFile(int rows) {
+        try {
+            Path path = Files.createTempFile("phae-bench", ".csv");
+            path.toFile().deleteOnExit();
+            StringBuilder csv = new StringBuilder();
+            Random random = new Random(42);
+            for (int i = 0; i < rows; i++) {
+                csv.append(i).append(',').append(random.nextInt(2000) - 1000).append(',')
+                   .append(random.nextInt(100000) / 1000.0).append('\n');
+            }
+            Files.writeString(path, csv);
+            return path.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A temporary file with one line per element, deleted on exit
+    private static String linesFile(String[] lines) {
+        try {
+            Path path = Files.createTempFile("phae-bench", ".txt");
+            path.toFile().deleteOnExit();
+            Files.write(path, Arrays.asList(lines));
+            return path.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Distinct lowercase words of 3 to 10 letters
+    private static String[] vocabulary(Random random, int size) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < size) {
+            char[] letters = new char[3 + random.nextInt(8)];
+            for (int i = 0; i < letters.length; i++) {
+                letters[i] = (char) ('a' + random.nextInt(26));
+            }
+            words.add(new String(letters));
+        }
+        return words.toArray(new String[0]);
+    }
+
+    // Many short statements of every kind: a wide, shallow AST
+    private static String largeSource(int blocks) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < blocks; i++) {
+            source.append("value").append(i % 100).append(" = ").append(i).append(" * 2 + 1.5;\n")
+                  .append("if (value").append(i % 100).append(" >= 10) {\n")
+                  .append("    print(\"big\");\n")
+                  .append("} else {\n")
+                  .append("    print(value").append(i % 100).append(");\n")
+                  .append("}\n");
+        }
+        return source.toString();
+    }
+
+    // Nested ifs with parenthesized conditions: a deep, narrow AST
+    private static String deepSource(int depth) {
+        StringBuilder source = new StringBuilder("x = 1;\n");
+        for (int i = 0; i < depth; i++) {
+            source.append("if ((x + ").append(i).append(") > 0) {\n");
+        }
+        source.append("print(x);\n");
+        for (int i = 0; i < depth; i++) {
+            source.append("}\n");
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,224 @@
+import java.util.*;
+
+// Dictionary value, keyed by ints or strings and kept in insertion order.
+// Entries live in dense arrays in the order they were added; an open
+// addressing table, probed linearly and at most half full, finds them. Each
+// table slot holds the key's hash next to its entry number, so probing past
+// other keys reads only the table, and growing it never rehashes a key.
+// While every key is an int the keys are kept in an int[], so int lookups
+// and stores box nothing. The first string key moves them to an Object[],
+// compared with equals() once the hashes match. Whole doubles are stored as
+// ints, so d[2] and d[4 / 2] are the same entry, as they are equal under ==.
+final class PhaeDict {
+    private static final int MIN_TABLE_SIZE = 8;
+
+    private int[] table;        // Per slot: the hash, then entry number + 1 (0 when free)
+    private int[] intKeys;      // Non-null while every key is an int
+    private Object[] keys;      // Non-null once a string key was added
+    private Object[] values;
+    private int size = 0;
+
+    PhaeDict() {
+        table = new int[MIN_TABLE_SIZE * 2];
+        intKeys = new int[MIN_TABLE_SIZE / 2];
+        values = new Object[MIN_TABLE_SIZE / 2];
+    }
+
+    static boolean isBuiltin(String name) {
+        return name.equals("has") || name.equals("get");
+    }
+
+    //   has(dict, key)           true when the dictionary has the key
+    //   get(dict, key, default)  the value for key, or default when it is missing
+    static Object call(String name, List<Object> arguments) {
+        int arity = name.equals("has") ? 2 : 3;
+        if (arguments.size() != arity) {
+            throw new RuntimeException("Expected " + arity + " arguments but got " + arguments.size());
+        }
+        if (!(arguments.get(0) instanceof PhaeDict dict)) {
+            throw new RuntimeException(name + "() needs a dictionary, not " + arguments.get(0));
+        }
+        int entry = dict.find(arguments.get(1));
+        if (name.equals("has")) {
+            return entry >= 0;
+        }
+        return entry >= 0 ? dict.values[entry] : arguments.get(2);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean hasIntKeys() {
+        return intKeys != null;
+    }
+
+    // Only while hasIntKeys()
+    int intKeyAt(int entry) {
+        return intKeys[entry];
+    }
+
+    Object keyAt(int entry) {
+        return intKeys != null ? (Object) intKeys[entry] : keys[entry];
+    }
+
+    Object valueAt(int entry) {
+        return values[entry];
+    }
+
+    // The entry number of the key, or -1 when it is missing
+    int findInt(int key) {
+        if (intKeys == null) {
+            return find(key, hash(key));
+        }
+        int hash = hash(key);
+        int mask = table.length - 2;
+        for (int slot = (hash << 1) & mask; ; slot = (slot + 2) & mask) {
+            int entry = table[slot + 1] - 1;
+            if (entry < 0 || table[slot] == hash && intKeys[entry] == key) {
+                return entry;
+            }
+        }
+    }
+
+    int find(Object key) {
+        key = Rope.flatten(key);
+        if (key instanceof String text) {
+            return intKeys != null ? -1 : find(text, hash(text.hashCode()));
+        }
+        return findInt((Integer) key(key));
+    }
+
+    void putInt(int key, Object value) {
+        int entry = findInt(key);
+        if (entry >= 0) {
+            values[entry] = value;
+        } else if (intKeys != null) {
+            int at = add(hash(key), value);
+            intKeys[at] = key;
+        } else {
+            int at = add(hash(key), value);
+            keys[at] = key;
+        }
+    }
+
+    void put(Object key, Object value) {
+        key = Rope.flatten(key);
+        if (!(key instanceof String text)) {
+            putInt((Integer) key(key), value);
+            return;
+        }
+        int hash = hash(text.hashCode());
+        int entry = intKeys != null ? -1 : find(text, hash);
+        if (entry >= 0) {
+            values[entry] = value;
+            return;
+        }
+        if (intKeys != null) {
+            generalizeKeys();
+        }
+        int at = add(hash, value);
+        keys[at] = text;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joined = new StringJoiner(", ", "{", "}");
+        for (int i = 0; i < size; i++) {
+            joined.add(keyAt(i) + ": " + values[i]);
+        }
+        return joined.toString();
+    }
+
+    // Ints as they are, whole doubles as ints; strings and ropes never get here
+    private static Object key(Object value) {
+        if (value instanceof Integer) {
+            return value;
+        } else if (value instanceof Double d && d == (int) d.doubleValue()) {
+            return (int) d.doubleValue();
+        }
+        throw new RuntimeException("Dictionary keys must be whole numbers or strings, not " + value);
+    }
+
+    // Probes the Object[] keys. The argument is the receiver of equals(),
+    // so the call is to a known class.
+    private int find(String key, int hash) {
+        int mask = table.length - 2;
+        for (int slot = (hash << 1) & mask; ; slot = (slot + 2) & mask) {
+            int entry = table[slot + 1] - 1;
+            if (entry < 0 || table[slot] == hash && key.equals(keys[entry])) {
+                return entry;
+            }
+        }
+    }
+
+    private int find(Integer key, int hash) {
+        int mask = table.length - 2;
+        for (int slot = (hash << 1) & mask; ; slot = (slot + 2) & mask) {
+            int entry = table[slot + 1] - 1;
+            if (entry < 0 || table[slot] == hash && key.equals(keys[entry])) {
+                return entry;
+            }
+        }
+    }
+
+    // Appends an entry with the given hash and value; the caller stores the key
+    private int add(int hash, Object value) {
+        if (size == values.length) {
+            int capacity = size * 2;
+            values = Arrays.copyOf(values, capacity);
+            if (intKeys != null) {
+                intKeys = Arrays.copyOf(intKeys, capacity);
+            } else {
+                keys = Arrays.copyOf(keys, capacity);
+            }
+        }
+        // Slots are two ints, so the table is at most half full while
+        // size * 4 <= table.length
+        if ((size + 1) * 4 > table.length) {
+            growTable();
+        }
+        int entry = size++;
+        values[entry] = value;
+        insert(table, hash, entry + 1);
+        return entry;
+    }
+
+    private static void insert(int[] table, int hash, int entryPlusOne) {
+        int mask = table.length - 2;
+        int slot = (hash << 1) & mask;
+        while (table[slot + 1] != 0) {
+            slot = (slot + 2) & mask;
+        }
+        table[slot] = hash;
+        table[slot + 1] = entryPlusOne;
+    }
+
+    // Doubles the table from the stored hashes
+    private void growTable() {
+        int[] grown = new int[table.length * 2];
+        for (int slot = 0; slot < table.length; slot += 2) {
+            if (table[slot + 1] != 0) {
+                insert(grown, table[slot], table[slot + 1]);
+            }
+        }
+        table = grown;
+    }
+
+    // Boxes the int keys once, when the first string key arrives
+    private void generalizeKeys() {
+        keys = new Object[values.length];
+        for (int i = 0; i < size; i++) {
+            keys[i] = intKeys[i];
+        }
+        intKeys = null;
+    }
+
+    // Spreads the bits so that runs of ints and similar strings do not
+    // probe into each other's slots
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,104 @@
+import java.util.*;
+import jdk.jfr.*;
+
+// JDK Flight Recorder events for the Phae pipeline. They cost next to
+// nothing unless a recording enables them, e.g.
+//   java -XX:StartFlightRecording:filename=phae.jfr PhaeCompiler ...
+// Function calls shorter than the threshold (1 ms by default) are dropped.
+// A settings file can change it:
+//   <event name="phae.FunctionCall"><setting name="threshold">0 ms</setting></event>
+final class PhaeEvents {
+    private PhaeEvents() {
+    }
+
+    @Name("phae.Lex")
+    @Label("Phae Lex")
+    @Category("Phae")
+    @Description("Tokenizing a source")
+    static final class LexEvent extends Event {
+        @Label("Source Length")
+        @DataAmount(DataAmount.BYTES)
+        long sourceLength;
+
+        @Label("Tokens")
+        int tokenCount;
+    }
+
+    @Name("phae.Parse")
+    @Label("Phae Parse")
+    @Category("Phae")
+    @Description("Parsing tokens into an AST")
+    static final class ParseEvent extends Event {
+        @Label("Tokens")
+        int tokenCount;
+
+        @Label("AST Nodes")
+        int nodeCount;
+    }
+
+    @Name("phae.Interpret")
+    @Label("Phae Interpret")
+    @Category("Phae")
+    @Description("Running a whole program in the Interpreter")
+    static final class InterpretEvent extends Event {
+        @Label("AST Nodes")
+        int nodeCount;
+
+        @Label("Statements Executed")
+        long statements;
+    }
+
+    @Name("phae.FunctionCall")
+    @Label("Phae Function Call")
+    @Category("Phae")
+    @Description("A Phae function call, including its callees")
+    @Threshold("1 ms")
+    static final class FunctionCallEvent extends Event {
+        @Label("Function")
+        String functionName;
+    }
+
+    // Nodes in a statement list, counting every nested statement and expression
+    static int countNodes(List<ASTNode> nodes) {
+        int count = 0;
+        for (ASTNode node : nodes) {
+            count += countNodes(node);
+        }
+        return count;
+    }
+
+    private static int countNodes(ASTNode node) {
+        if (node == null) {
+            return 0;
+        } else if (node instanceof FunctionDecl decl) {
+            return 1 + countNodes(decl.body);
+        } else if (node instanceof FunctionCall call) {
+            return 1 + countNodes(call.arguments);
+        } else if (node instanceof ReturnStmt ret) {
+            return 1 + countNodes(ret.value);
+        } else if (node instanceof ForLoop loop) {
+            return 1 + countNodes(loop.iterable) + countNodes(loop.body);
+        } else if (node instanceof WhileLoop loop) {
+            return 1 + countNodes(loop.condition) + countNodes(loop.body);
+        } else if (node instanceof RangeExpr range) {
+            return 1 + countNodes(range.start) + countNodes(range.end) + countNodes(range.step);
+        } else if (node instanceof IfStmt ifStmt) {
+            return 1 + countNodes(ifStmt.condition) + countNodes(ifStmt.thenBranch) + countNodes(ifStmt.elseBranch);
+        } else if (node instanceof PrintStmt print) {
+            return 1 + countNodes(print.expression);
+        } else if (node instanceof BinaryExpr binary) {
+            return 1 + countNodes(binary.left) + countNodes(binary.right);
+        } else if (node instanceof VarAssign assign) {
+            return 1 + countNodes(assign.expression);
+        } else if (node instanceof ArrayLiteral array) {
+            return 1 + countNodes(array.elements);
+        } else if (node instanceof DictLiteral dict) {
+            return 1 + countNodes(dict.keys) + countNodes(dict.values);
+        } else if (node instanceof IndexExpr index) {
+            return 1 + countNodes(index.array) + countNodes(index.index);
+        } else if (node instanceof IndexAssign assign) {
+            return 1 + countNodes(assign.index) + countNodes(assign.expression);
+        }
+        return 1;
+    }
+}
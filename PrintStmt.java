@@ -0,0 +1,8 @@
+// print statement node
+class PrintStmt extends ASTNode {
+    ASTNode expression;
+
+    PrintStmt(ASTNode expression) {
+        this.expression = expression;
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Language-level profile of one Interpreter run: calls and inclusive and
+// exclusive time per function, execution counts per statement and iteration
+// counts per loop. Time is attributed along the call tree, which is also
+// written out as collapsed stacks ("main;f;g <microseconds>") for flame
+// graph tools. The Interpreter only calls in here when a profiler is set.
+final class Profiler {
+    // Per-function totals
+    private static final class FunctionStats {
+        final String name;
+        long calls;
+        long inclusiveNanos;
+        long exclusiveNanos;
+        int active; // Recursive activations; inclusive time counts the outermost only
+
+        FunctionStats(String name) {
+            this.name = name;
+        }
+    }
+
+    // One node of the call tree
+    private static final class CallNode {
+        final String name;
+        final CallNode parent;
+        final FunctionStats function;
+        final Map<String, CallNode> children = new HashMap<>(4);
+        long exclusiveNanos;
+        long start;
+        long childNanos;
+
+        CallNode(String name, CallNode parent, FunctionStats function) {
+            this.name = name;
+            this.parent = parent;
+            this.function = function;
+        }
+    }
+
+    private final Map<String, FunctionStats> functions = new HashMap<>();
+    // Counters are indexed by node, in the order nodes are first executed
+    private final IdentityHashMap<ASTNode, Integer> index = new IdentityHashMap<>();
+    private final List<ASTNode> nodes = new ArrayList<>();
+    private final List<String> owners = new ArrayList<>();
+    private long[] executions = new long[64];
+    private long[] iterations = new long[64];
+
+    private final CallNode root = new CallNode("main", null, null);
+    private CallNode current = root;
+    private long startTime;
+    private long totalNanos;
+
+    void start() {
+        startTime = System.nanoTime();
+        root.start = startTime;
+    }
+
+    void stop() {
+        long now = System.nanoTime();
+        // Unwind calls cut short by an error
+        while (current != root) {
+            exit(now);
+        }
+        totalNanos = now - startTime;
+        root.exclusiveNanos += totalNanos - root.childNanos;
+    }
+
+    void statement(ASTNode node) {
+        executions[slot(node)]++;
+    }
+
+    void iteration(ASTNode loop) {
+        iterations[slot(loop)]++;
+    }
+
+    void enter(String name) {
+        FunctionStats stats = functions.computeIfAbsent(name, FunctionStats::new);
+        stats.calls++;
+        stats.active++;
+        CallNode node = current.children.get(name);
+        if (node == null) {
+            node = new CallNode(name, current, stats);
+            current.children.put(name, node);
+        }
+        node.childNanos = 0;
+        node.start = System.nanoTime();
+        current = node;
+    }
+
+    void exit() {
+        exit(System.nanoTime());
+    }
+
+    private void exit(long now) {
+        CallNode node = current;
+        long elapsed = now - node.start;
+        long exclusive = elapsed - node.childNanos;
+        node.exclusiveNanos += exclusive;
+        node.function.exclusiveNanos += exclusive;
+        if (--node.function.active == 0) {
+            node.function.inclusiveNanos += elapsed;
+        }
+        current = node.parent;
+        current.childNanos += elapsed;
+    }
+
+    private int slot(ASTNode node) {
+        Integer slot = index.get(node);
+        if (slot == null) {
+            slot = nodes.size();
+            index.put(node, slot);
+            nodes.add(node);
+            owners.add(current.name);
+            if (slot == executions.length) {
+                executions = Arrays.copyOf(executions, slot * 2);
+                iterations = Arrays.copyOf(iterations, slot * 2);
+            }
+        }
+        return slot;
+    }
+
+    String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Profile: %.3f ms total%n", totalNanos / 1e6));
+
+        List<FunctionStats> byTime = new ArrayList<>(functions.values());
+        byTime.sort(Comparator.comparingLong((FunctionStats stats) -> stats.exclusiveNanos).reversed());
+        report.append(String.format("%n%-24s %10s %14s %14s%n", "function", "calls", "inclusive ms", "exclusive ms"));
+        report.append(String.format("%-24s %10s %14.3f %14.3f%n", "main", "", totalNanos / 1e6, root.exclusiveNanos / 1e6));
+        for (FunctionStats stats : byTime) {
+            report.append(String.format("%-24s %10d %14.3f %14.3f%n",
+                stats.name, stats.calls, stats.inclusiveNanos / 1e6, stats.exclusiveNanos / 1e6));
+        }
+
+        report.append(String.format("%n%-12s %12s %12s  %s%n", "function", "executions", "iterations", "statement"));
+        for (int i = 0; i < nodes.size(); i++) {
+            ASTNode node = nodes.get(i);
+            boolean loop = node instanceof ForLoop || node instanceof WhileLoop;
+            report.append(String.format("%-12s %12d %12s  %s%n",
+                owners.get(i), executions[i], loop ? Long.toString(iterations[i]) : "", describe(node)));
+        }
+        return report.toString();
+    }
+
+    // Exclusive time per call stack, in microseconds
+    void writeCollapsedStacks(Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writeStacks(root, root.name, out);
+        }
+    }
+
+    private static void writeStacks(CallNode node, String stack, Writer out) throws IOException {
+        long micros = node.exclusiveNanos / 1000;
+        if (micros > 0) {
+            out.write(stack + " " + micros + "\n");
+        }
+        for (CallNode child : node.children.values()) {
+            writeStacks(child, stack + ";" + child.name, out);
+        }
+    }
+
+    // One-line source-like form of a statement
+    static String describe(ASTNode node) {
+        if (node instanceof PrintStmt print) {
+            return "print(" + expression(print.expression) + ")";
+        } else if (node instanceof VarAssign assign) {
+            return assign.identifier + " = " + expression(assign.expression);
+        } else if (node instanceof IfStmt ifStmt) {
+            return "if (" + expression(ifStmt.condition) + ")";
+        } else if (node instanceof ForLoop loop) {
+            return "for " + loop.variable + " in " + expression(loop.iterable);
+        } else if (node instanceof WhileLoop loop) {
+            return "while (" + expression(loop.condition) + ")";
+        } else if (node instanceof ReturnStmt ret) {
+            return "return " + expression(ret.value);
+        } else if (node instanceof FunctionDecl decl) {
+            return "function " + decl.name + "(" + String.join(", ", decl.parameters) + ")";
+        } else if (node instanceof InputStmt input) {
+            return "input(" + input.identifier + ")";
+        } else if (node instanceof IndexAssign assign) {
+            return assign.identifier + "[" + expression(assign.index) + "] = " + expression(assign.expression);
+        }
+        return expression(node);
+    }
+
+    private static String expression(ASTNode node) {
+        if (node instanceof Literal literal) {
+            return literal.value instanceof String ? "\"" + literal.value + "\"" : String.valueOf(literal.value);
+        } else if (node instanceof Expression expr) {
+            return expr.type == TokenType.STRING ? "\"" + expr.value + "\"" : expr.value;
+        } else if (node instanceof BinaryExpr binary) {
+            return operand(binary.left) + " " + binary.operator.value + " " + operand(binary.right);
+        } else if (node instanceof FunctionCall call) {
+            return call.name + "(" + arguments(call.arguments) + ")";
+        } else if (node instanceof RangeExpr range) {
+            return "range(" + expression(range.start) + ", " + expression(range.end) + ", " + expression(range.step) + ")";
+        } else if (node instanceof LinesExpr) {
+            return "lines()";
+        } else if (node instanceof ArrayLiteral array) {
+            return "[" + arguments(array.elements) + "]";
+        } else if (node instanceof DictLiteral dict) {
+            StringJoiner joined = new StringJoiner(", ", "{", "}");
+            for (int i = 0; i < dict.keys.size(); i++) {
+                joined.add(expression(dict.keys.get(i)) + ": " + expression(dict.values.get(i)));
+            }
+            return joined.toString();
+        } else if (node instanceof IndexExpr index) {
+            return operand(index.array) + "[" + expression(index.index) + "]";
+        }
+        return node == null ? "" : node.getClass().getSimpleName();
+    }
+
+    private static String operand(ASTNode node) {
+        return node instanceof BinaryExpr ? "(" + expression(node) + ")" : expression(node);
+    }
+
+    private static String arguments(List<ASTNode> arguments) {
+        StringJoiner joined = new StringJoiner(", ");
+        for (ASTNode argument : arguments) {
+            joined.add(expression(argument));
+        }
+        return joined.toString();
+    }
+}
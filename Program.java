@@ -0,0 +1,101 @@
+import java.util.*;
+
+// A compiled Phae program for embedding. Compiling lexes, parses and resolves
+// the source once; the result is immutable, so one Program can be run any
+// number of times, from any number of threads. Each run gets its own
+// Interpreter, global frame, input and output.
+final class Program {
+    private final List<ASTNode> ast;
+    private final int globalSlots;
+    private final Map<String, Integer> globals;
+    private final List<String> externals;
+
+    Program(List<ASTNode> ast, int globalSlots, Map<String, Integer> globals, List<String> externals) {
+        this.ast = ast;
+        this.globalSlots = globalSlots;
+        this.globals = globals;
+        this.externals = externals;
+    }
+
+    static Program compile(String source) {
+        return compile(source, List.of());
+    }
+
+    // Externals are variables the embedder must set on every run
+    static Program compile(String source, Collection<String> externals) {
+        List<ASTNode> ast = new Parser(new Lexer(source).tokenizeCompact()).parse();
+        new ConstantMaterializer().materialize(ast);
+        Resolver resolver = new Resolver();
+        int globalSlots = resolver.resolve(ast, externals);
+        return new Program(List.copyOf(ast), globalSlots, Map.copyOf(resolver.globals()), List.copyOf(externals));
+    }
+
+    // Names of all global variables, including externals
+    Set<String> variables() {
+        return globals.keySet();
+    }
+
+    // Resolved AST, for the ProgramCodec; it must not be modified
+    List<ASTNode> ast() {
+        return ast;
+    }
+
+    int globalSlots() {
+        return globalSlots;
+    }
+
+    Map<String, Integer> globals() {
+        return globals;
+    }
+
+    List<String> externals() {
+        return externals;
+    }
+
+    void run(OutputSink out) {
+        run(Map.of(), InputSource.of(Map.of()), out);
+    }
+
+    // Runs once with the given variable values and returns the final value
+    // of every global the run assigned. Values must be Integers, Doubles,
+    // Strings, Booleans, PhaeArrays or PhaeDicts.
+    Map<String, Object> run(Map<String, ?> variables, InputSource in, OutputSink out) {
+        Object[] frame = Values.newFrame(globalSlots);
+        for (Map.Entry<String, ?> entry : variables.entrySet()) {
+            Integer slot = globals.get(entry.getKey());
+            if (slot == null) {
+                throw new IllegalArgumentException("Unknown variable: " + entry.getKey());
+            }
+            Object value = entry.getValue();
+            if (value != null && !isPhaeValue(value)) {
+                throw new IllegalArgumentException("Unsupported value for variable " + entry.getKey() + ": "
+                                                   + value.getClass().getName());
+            }
+            frame[slot] = value;
+        }
+        for (String name : externals) {
+            Object value = frame[globals.get(name)];
+            if (value == null || value == Values.UNASSIGNED) {
+                throw new IllegalArgumentException("Missing value for external variable: " + name);
+            }
+        }
+
+        new Interpreter(out, in).interpret(ast, frame);
+
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Integer> global : globals.entrySet()) {
+            Object value = frame[global.getValue()];
+            if (value != null && value != Values.UNASSIGNED) {
+                result.put(global.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    // Only values a script could have made itself; anything else would fail
+    // deep inside Values, or print oddly
+    private static boolean isPhaeValue(Object value) {
+        return value instanceof Integer || value instanceof Double || value instanceof Boolean
+            || Rope.isText(value) || value instanceof PhaeArray || value instanceof PhaeDict;
+    }
+}
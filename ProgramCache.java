@@ -0,0 +1,592 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Content-addressed cache of compiled Programs. Entries are keyed by a
+// SHA-256 of the compiler version, the external names and the source. An
+// in-memory LRU tier holds Programs up to a byte budget, measured by their
+// encoded size. An optional directory keeps encoded Programs across JVMs;
+// it is best effort, so an entry that cannot be read or written is counted
+// as a disk error and the Program compiled as on a miss. Safe to share
+// between threads.
+final class ProgramCache {
+    // Bump whenever the parser, the resolver or the AST changes
+    static final String COMPILER_VERSION = "phae-25";
+
+    private final Path directory;
+    private final long maxMemoryBytes;
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long diskErrors = 0;
+
+    private static final class Entry {
+        final Program program;
+        final int size;
+
+        Entry(Program program, int size) {
+            this.program = program;
+            this.size = size;
+        }
+    }
+
+    // directory may be null for a memory-only cache
+    ProgramCache(Path directory, long maxMemoryBytes) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    Program get(String source) {
+        return get(source, List.of());
+    }
+
+    Program get(String source, Collection<String> externals) {
+        String key = key(source, externals);
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.program;
+            }
+        }
+
+        byte[] encoded = directory != null ? readEntry(key) : null;
+        Program program = null;
+        if (encoded != null) {
+            try {
+                program = ProgramCodec.decode(encoded);
+            } catch (RuntimeException e) {
+                // Damaged or from another format version; compiled again below
+                program = null;
+            }
+        }
+
+        if (program != null) {
+            synchronized (this) {
+                diskHits++;
+            }
+        } else {
+            program = Program.compile(source, externals);
+            encoded = ProgramCodec.encode(program);
+            if (directory != null) {
+                writeEntry(key, encoded);
+            }
+            synchronized (this) {
+                misses++;
+            }
+        }
+        put(key, program, encoded.length);
+        return program;
+    }
+
+    synchronized String stats() {
+        return String.format("cache: %d memory hits, %d disk hits, %d misses, %d disk errors, %d programs in %d bytes",
+            hits, diskHits, misses, diskErrors, memory.size(), memoryBytes);
+    }
+
+    private synchronized void put(String key, Program program, int size) {
+        Entry old = memory.put(key, new Entry(program, size));
+        if (old != null) {
+            memoryBytes -= old.size;
+        }
+        memoryBytes += size;
+        Iterator<Entry> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    private byte[] readEntry(String key) {
+        try {
+            return Files.readAllBytes(directory.resolve(key + ".phc"));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            diskError();
+            return null;
+        }
+    }
+
+    // Written to a temporary file and moved into place, so concurrent
+    // readers never see a partial entry. The temporary file is removed
+    // when any step fails.
+    private void writeEntry(String key, byte[] encoded) {
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, encoded);
+            Files.move(temp, directory.resolve(key + ".phc"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException e) {
+            diskError();
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // Nothing else to do; the entry was never published
+                }
+            }
+        }
+    }
+
+    private synchronized void diskError() {
+        diskErrors++;
+    }
+
+    static String key(String source, Collection<String> externals) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(COMPILER_VERSION.getBytes(StandardCharsets.UTF_8));
+        for (String name : externals) {
+            digest.update((byte) 0);
+            digest.update(name.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 1);
+        digest.update(source.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
+
+// Binary form of a resolved, materialized Program. Numbers are unsigned
+// varints and every string is written once, then referred to by index, so
+// decoding allocates little beyond the nodes themselves. A CRC32 of the
+// payload follows the header. Decoding checks it, bounds every count and
+// length by the bytes left, and checks every slot against its frame, so a
+// damaged entry fails with an IllegalArgumentException and never runs.
+final class ProgramCodec {
+    private static final int MAGIC = 0x50484143; // "PHAC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 12;   // Magic, version, CRC32 of the rest
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private static final int FUNCTION_DECL = 1;
+    private static final int FUNCTION_CALL = 2;
+    private static final int RETURN = 3;
+    private static final int FOR = 4;
+    private static final int WHILE = 5;
+    private static final int RANGE = 6;
+    private static final int IF = 7;
+    private static final int PRINT = 8;
+    private static final int EXPRESSION = 9;
+    private static final int LITERAL_INT = 10;
+    private static final int LITERAL_DOUBLE = 11;
+    private static final int LITERAL_STRING = 12;
+    private static final int BINARY = 13;
+    private static final int ASSIGN = 14;
+    private static final int INPUT = 15;
+    private static final int NULL = 16;
+    private static final int LINES = 17;
+    private static final int ARRAY = 18;
+    private static final int INDEX = 19;
+    private static final int INDEX_ASSIGN = 20;
+    private static final int DICT = 21;
+
+    static byte[] encode(Program program) {
+        Encoder encoder = new Encoder();
+        encoder.fixed(MAGIC, 4);
+        encoder.fixed(FORMAT_VERSION, 4);
+        encoder.fixed(0, 4);  // Checksum, filled in below
+        encoder.varint(program.globalSlots());
+        encoder.varint(program.externals().size());
+        for (String name : program.externals()) {
+            encoder.string(name);
+        }
+        // In slot order, so the same program always encodes to the same bytes
+        String[] names = new String[program.globals().size()];
+        for (Map.Entry<String, Integer> global : program.globals().entrySet()) {
+            names[global.getValue()] = global.getKey();
+        }
+        encoder.varint(names.length);
+        for (int slot = 0; slot < names.length; slot++) {
+            encoder.string(names[slot]);
+            encoder.varint(slot);
+        }
+        encoder.nodes(program.ast());
+        byte[] bytes = encoder.bytes.toByteArray();
+        ByteBuffer.wrap(bytes).putInt(8, checksum(bytes));
+        return bytes;
+    }
+
+    static Program decode(byte[] encoded) {
+        Decoder decoder = new Decoder(encoded);
+        if (encoded.length < HEADER_SIZE || decoder.in.getInt() != MAGIC || decoder.in.getInt() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a compiled Phae program");
+        }
+        if (decoder.in.getInt() != checksum(encoded)) {
+            throw new IllegalArgumentException("Damaged compiled Phae program: checksum mismatch");
+        }
+        // The Resolver gives every global a name, so there are as many names as slots
+        int globalSlots = decoder.count();
+        String[] externals = new String[decoder.count()];
+        for (int i = 0; i < externals.length; i++) {
+            externals[i] = decoder.string();
+        }
+        int globalCount = decoder.count();
+        if (globalCount != globalSlots) {
+            throw new IllegalArgumentException("Bad global count " + globalCount + " for " + globalSlots + " slots");
+        }
+        decoder.frameSize = globalSlots;
+        Map<String, Integer> globals = new HashMap<>(globalCount * 2);
+        for (int i = 0; i < globalCount; i++) {
+            String name = decoder.string();
+            globals.put(name, decoder.slot());
+        }
+        List<ASTNode> ast = decoder.nodes();
+        if (decoder.in.hasRemaining()) {
+            throw new IllegalArgumentException("Trailing bytes after compiled Phae program");
+        }
+        return new Program(List.copyOf(ast), globalSlots, Map.copyOf(globals), List.of(externals));
+    }
+
+    private static int checksum(byte[] encoded) {
+        CRC32 crc = new CRC32();
+        crc.update(encoded, HEADER_SIZE, encoded.length - HEADER_SIZE);
+        return (int) crc.getValue();
+    }
+
+    private static final class Encoder {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Map<String, Integer> strings = new HashMap<>();
+
+        // Big-endian, as ByteBuffer reads it back
+        void fixed(long value, int size) {
+            for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+                bytes.write((int) (value >>> shift));
+            }
+        }
+
+        void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes.write(value);
+        }
+
+        // 0 introduces a new string; n refers to the n-th string written
+        void string(String value) {
+            Integer index = strings.get(value);
+            if (index != null) {
+                varint(index);
+                return;
+            }
+            strings.put(value, strings.size() + 1);
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varint(0);
+            varint(utf8.length);
+            bytes.write(utf8, 0, utf8.length);
+        }
+
+        void nodes(List<ASTNode> nodes) {
+            varint(nodes.size());
+            for (ASTNode node : nodes) {
+                node(node);
+            }
+        }
+
+        void node(ASTNode node) {
+            if (node == null) {
+                varint(NULL);
+            } else if (node instanceof FunctionDecl decl) {
+                varint(FUNCTION_DECL);
+                string(decl.name);
+                varint(decl.parameters.size());
+                for (String parameter : decl.parameters) {
+                    string(parameter);
+                }
+                varint(decl.frameSize);
+                nodes(decl.body);
+            } else if (node instanceof FunctionCall call) {
+                varint(FUNCTION_CALL);
+                string(call.name);
+                nodes(call.arguments);
+            } else if (node instanceof ReturnStmt ret) {
+                varint(RETURN);
+                node(ret.value);
+            } else if (node instanceof ForLoop loop) {
+                varint(FOR);
+                string(loop.variable);
+                varint(loop.slot + 1);
+                node(loop.iterable);
+                nodes(loop.body);
+            } else if (node instanceof WhileLoop loop) {
+                varint(WHILE);
+                node(loop.condition);
+                nodes(loop.body);
+            } else if (node instanceof RangeExpr range) {
+                varint(RANGE);
+                node(range.start);
+                node(range.end);
+                node(range.step);
+            } else if (node instanceof LinesExpr) {
+                varint(LINES);
+            } else if (node instanceof ArrayLiteral array) {
+                varint(ARRAY);
+                nodes(array.elements);
+            } else if (node instanceof DictLiteral dict) {
+                varint(DICT);
+                nodes(dict.keys);
+                nodes(dict.values);
+            } else if (node instanceof IndexExpr index) {
+                varint(INDEX);
+                node(index.array);
+                node(index.index);
+            } else if (node instanceof IndexAssign assign) {
+                varint(INDEX_ASSIGN);
+                string(assign.identifier);
+                varint(assign.slot + 1);
+                node(assign.index);
+                node(assign.expression);
+            } else if (node instanceof IfStmt ifStmt) {
+                varint(IF);
+                node(ifStmt.condition);
+                nodes(ifStmt.thenBranch);
+                nodes(ifStmt.elseBranch);
+            } else if (node instanceof PrintStmt print) {
+                varint(PRINT);
+                node(print.expression);
+            } else if (node instanceof Expression expr) {
+                varint(EXPRESSION);
+                string(expr.value);
+                varint(expr.type.ordinal());
+                varint(expr.slot + 1);
+                varint(expr.mayBeUnassigned ? 1 : 0);
+            } else if (node instanceof Literal literal) {
+                literal(literal.value);
+            } else if (node instanceof BinaryExpr binary) {
+                varint(BINARY);
+                string(binary.operator.value);
+                varint(binary.operator.type.ordinal());
+                node(binary.left);
+                node(binary.right);
+            } else if (node instanceof VarAssign assign) {
+                varint(ASSIGN);
+                string(assign.identifier);
+                varint(assign.slot + 1);
+                node(assign.expression);
+            } else if (node instanceof InputStmt input) {
+                varint(INPUT);
+                string(input.identifier);
+                varint(input.slot + 1);
+            } else {
+                throw new IllegalArgumentException("Cannot encode " + node.getClass().getSimpleName());
+            }
+        }
+
+        void literal(Object value) {
+            if (value instanceof Integer i) {
+                varint(LITERAL_INT);
+                fixed(i, 4);
+            } else if (value instanceof Double d) {
+                varint(LITERAL_DOUBLE);
+                fixed(Double.doubleToRawLongBits(d), 8);
+            } else {
+                varint(LITERAL_STRING);
+                string((String) value);
+            }
+        }
+    }
+
+    private static final class Decoder {
+        final ByteBuffer in;
+        String[] strings = new String[32];
+        int stringCount = 0;
+        int frameSize;  // Of the function, or the global frame, being decoded
+
+        Decoder(byte[] encoded) {
+            this.in = ByteBuffer.wrap(encoded);
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        // A count or length; every element takes at least one of the bytes left
+        int count() {
+            int count = varint();
+            if (count < 0 || count > in.remaining()) {
+                throw new IllegalArgumentException("Bad count " + count + " with " + in.remaining() + " bytes left");
+            }
+            return count;
+        }
+
+        int slot() {
+            return checkSlot(varint());
+        }
+
+        // Node slots are written plus one, so that -1 (none) fits a varint
+        int slotPlusOne() {
+            return checkSlot(varint() - 1);
+        }
+
+        private int checkSlot(int slot) {
+            if (slot < 0 || slot >= frameSize) {
+                throw new IllegalArgumentException("Bad slot " + slot + " in a frame of " + frameSize);
+            }
+            return slot;
+        }
+
+        TokenType tokenType() {
+            int ordinal = varint();
+            if (ordinal < 0 || ordinal >= TOKEN_TYPES.length) {
+                throw new IllegalArgumentException("Bad token type " + ordinal);
+            }
+            return TOKEN_TYPES[ordinal];
+        }
+
+        String string() {
+            int index = varint();
+            if (index != 0) {
+                if (index < 0 || index > stringCount) {
+                    throw new IllegalArgumentException("Bad string reference " + index);
+                }
+                return strings[index - 1];
+            }
+            int length = count();
+            String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            strings[stringCount++] = value;
+            return value;
+        }
+
+        List<ASTNode> nodes() {
+            int count = count();
+            List<ASTNode> nodes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                nodes.add(node());
+            }
+            return nodes;
+        }
+
+        ASTNode node() {
+            int tag = varint();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case FUNCTION_DECL: {
+                    String name = string();
+                    List<String> parameters = new ArrayList<>();
+                    for (int i = count(); i > 0; i--) {
+                        parameters.add(string());
+                    }
+                    // Each slot past the parameters is named somewhere in the body
+                    int frameSize = varint();
+                    if (frameSize < parameters.size() || frameSize - parameters.size() > in.remaining()) {
+                        throw new IllegalArgumentException("Bad frame size " + frameSize + " for function " + name);
+                    }
+                    int enclosing = this.frameSize;
+                    this.frameSize = frameSize;
+                    FunctionDecl decl = new FunctionDecl(name, parameters, nodes());
+                    this.frameSize = enclosing;
+                    decl.frameSize = frameSize;
+                    return decl;
+                }
+                case FUNCTION_CALL: {
+                    String name = string();
+                    return new FunctionCall(name, nodes());
+                }
+                case RETURN:
+                    return new ReturnStmt(node());
+                case FOR: {
+                    String variable = string();
+                    int slot = slotPlusOne();
+                    ASTNode iterable = node();
+                    ForLoop loop = new ForLoop(variable, iterable, nodes());
+                    loop.slot = slot;
+                    return loop;
+                }
+                case WHILE: {
+                    ASTNode condition = node();
+                    return new WhileLoop(condition, nodes());
+                }
+                case RANGE: {
+                    ASTNode start = node();
+                    ASTNode end = node();
+                    return new RangeExpr(start, end, node());
+                }
+                case LINES:
+                    return new LinesExpr();
+                case ARRAY:
+                    return new ArrayLiteral(nodes());
+                case DICT: {
+                    List<ASTNode> keys = nodes();
+                    return new DictLiteral(keys, nodes());
+                }
+                case INDEX: {
+                    ASTNode array = node();
+                    return new IndexExpr(array, node());
+                }
+                case INDEX_ASSIGN: {
+                    String identifier = string();
+                    int slot = slotPlusOne();
+                    ASTNode index = node();
+                    IndexAssign assign = new IndexAssign(identifier, index, node());
+                    assign.slot = slot;
+                    return assign;
+                }
+                case IF: {
+                    ASTNode condition = node();
+                    List<ASTNode> thenBranch = nodes();
+                    return new IfStmt(condition, thenBranch, nodes());
+                }
+                case PRINT:
+                    return new PrintStmt(node());
+                case EXPRESSION: {
+                    Expression expr = new Expression(string(), tokenType());
+                    expr.slot = expr.type == TokenType.IDENTIFIER ? slotPlusOne() : varint() - 1;
+                    expr.mayBeUnassigned = varint() != 0;
+                    return expr;
+                }
+                case LITERAL_INT:
+                    return new Literal(in.getInt());
+                case LITERAL_DOUBLE:
+                    return new Literal(in.getDouble());
+                case LITERAL_STRING:
+                    return new Literal(string());
+                case BINARY: {
+                    String text = string();
+                    Token operator = new Token(tokenType(), text);
+                    ASTNode left = node();
+                    return new BinaryExpr(left, operator, node());
+                }
+                case ASSIGN: {
+                    VarAssign assign = new VarAssign(string(), null);
+                    assign.slot = slotPlusOne();
+                    assign.expression = node();
+                    return assign;
+                }
+                case INPUT: {
+                    InputStmt input = new InputStmt(string());
+                    input.slot = slotPlusOne();
+                    return input;
+                }
+                default:
+                    throw new IllegalArgumentException("Bad node tag " + tag);
+            }
+        }
+    }
+}
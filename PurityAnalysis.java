@@ -0,0 +1,84 @@
+import java.util.*;
+
+// Finds the pure functions of a program. A function only sees its own frame,
+// so it can never write a global; it is pure when its body has no print or
+// input and every function it calls is pure. Calls may be recursive, so the
+// analysis starts from "all pure" and removes functions until nothing changes.
+// A name declared more than once is pure only if every declaration is.
+final class PurityAnalysis {
+    private PurityAnalysis() {
+    }
+
+    static Set<FunctionDecl> pureFunctions(List<ASTNode> nodes) {
+        Map<String, List<FunctionDecl>> declarations = new HashMap<>();
+        for (ASTNode node : nodes) {
+            if (node instanceof FunctionDecl decl) {
+                declarations.computeIfAbsent(decl.name, name -> new ArrayList<>()).add(decl);
+            }
+        }
+
+        Set<String> pureNames = new HashSet<>(declarations.keySet());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, List<FunctionDecl>> entry : declarations.entrySet()) {
+                if (!pureNames.contains(entry.getKey())) {
+                    continue;
+                }
+                for (FunctionDecl decl : entry.getValue()) {
+                    if (!isPure(decl.body, pureNames)) {
+                        pureNames.remove(entry.getKey());
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        Set<FunctionDecl> pure = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String name : pureNames) {
+            pure.addAll(declarations.get(name));
+        }
+        return pure;
+    }
+
+    private static boolean isPure(List<ASTNode> nodes, Set<String> pureNames) {
+        for (ASTNode node : nodes) {
+            if (!isPure(node, pureNames)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPure(ASTNode node, Set<String> pureNames) {
+        if (node == null) {
+            return true;
+        } else if (node instanceof PrintStmt || node instanceof InputStmt || node instanceof LinesExpr) {
+            return false;
+        } else if (node instanceof IndexAssign || node instanceof ArrayLiteral || node instanceof DictLiteral) {
+            // Arrays and dictionaries are mutable, so a cached result could be shared or stale
+            return false;
+        } else if (node instanceof FunctionCall call) {
+            return pureNames.contains(call.name) && isPure(call.arguments, pureNames);
+        } else if (node instanceof ReturnStmt ret) {
+            return isPure(ret.value, pureNames);
+        } else if (node instanceof ForLoop loop) {
+            return isPure(loop.iterable, pureNames) && isPure(loop.body, pureNames);
+        } else if (node instanceof WhileLoop loop) {
+            return isPure(loop.condition, pureNames) && isPure(loop.body, pureNames);
+        } else if (node instanceof RangeExpr range) {
+            return isPure(range.start, pureNames) && isPure(range.end, pureNames) && isPure(range.step, pureNames);
+        } else if (node instanceof IfStmt ifStmt) {
+            return isPure(ifStmt.condition, pureNames) && isPure(ifStmt.thenBranch, pureNames)
+                && isPure(ifStmt.elseBranch, pureNames);
+        } else if (node instanceof BinaryExpr binary) {
+            return isPure(binary.left, pureNames) && isPure(binary.right, pureNames);
+        } else if (node instanceof VarAssign assign) {
+            return isPure(assign.expression, pureNames);
+        } else if (node instanceof IndexExpr index) {
+            return isPure(index.array, pureNames) && isPure(index.index, pureNames);
+        }
+        return true;
+    }
+}
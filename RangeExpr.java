@@ -0,0 +1,12 @@
+// range() node
+class RangeExpr extends ASTNode {
+    ASTNode start;
+    ASTNode end;
+    ASTNode step;  
+
+    RangeExpr(ASTNode start, ASTNode end, ASTNode step) {
+        this.start = start;
+        this.end = end;
+        this.step = step;
+    }
+}
@@ -0,0 +1,5 @@
+// A value a for-in loop can walk: next() gives one value per iteration and
+// null once there are no more
+interface Records {
+    Object next();
+}
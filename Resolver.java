@@ -0,0 +1,136 @@
+import java.util.*;
+
+// Resolver: assigns every variable a frame slot so the interpreter can use
+// Object[] frames instead of hashing names. Top-level code shares the global
+// frame; each function gets its own frame with parameters in the first slots.
+// Every name read or assigned in a scope gets a slot, wherever it appears.
+// Slots start out as Values.UNASSIGNED, and a read that some path reaches
+// before any assignment is marked so the engines check it at runtime.
+class Resolver {
+    private Map<String, Integer> scope;
+    private BitSet assigned;  // Slots assigned on every path to the current node
+
+    // Resolves the program and returns the size of the global frame
+    int resolve(List<ASTNode> nodes) {
+        return resolve(nodes, List.of());
+    }
+
+    // External variables are set by the embedder before the program runs.
+    // They take the first global slots, in the given order.
+    int resolve(List<ASTNode> nodes, Collection<String> externals) {
+        scope = new HashMap<>();
+        assigned = new BitSet();
+        for (String name : externals) {
+            assigned.set(declare(name));
+        }
+        resolveBlock(nodes);
+        return scope.size();
+    }
+
+    // Slot of every global variable; valid after resolve()
+    Map<String, Integer> globals() {
+        return Collections.unmodifiableMap(scope);
+    }
+
+    private void resolveBlock(List<ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            resolveStmt(node);
+        }
+    }
+
+    private void resolveStmt(ASTNode node) {
+        if (node instanceof PrintStmt printStmt) {
+            resolveExpr(printStmt.expression);
+        } else if (node instanceof IfStmt ifStmt) {
+            resolveExpr(ifStmt.condition);
+            BitSet before = (BitSet) assigned.clone();
+            resolveBlock(ifStmt.thenBranch);
+            BitSet afterThen = assigned;
+            assigned = before;
+            resolveBlock(ifStmt.elseBranch);
+            assigned.and(afterThen);
+        } else if (node instanceof ForLoop forLoop) {
+            // The body may run zero times, so nothing it assigns counts afterwards
+            resolveExpr(forLoop.iterable);
+            forLoop.slot = declare(forLoop.variable);
+            BitSet before = (BitSet) assigned.clone();
+            assigned.set(forLoop.slot);
+            resolveBlock(forLoop.body);
+            assigned = before;
+        } else if (node instanceof WhileLoop whileLoop) {
+            resolveExpr(whileLoop.condition);
+            BitSet before = (BitSet) assigned.clone();
+            resolveBlock(whileLoop.body);
+            assigned = before;
+        } else if (node instanceof VarAssign varAssign) {
+            resolveExpr(varAssign.expression);
+            varAssign.slot = declare(varAssign.identifier);
+            assigned.set(varAssign.slot);
+        } else if (node instanceof IndexAssign indexAssign) {
+            // Reads the slot; the Interpreter always checks it
+            resolveExpr(indexAssign.index);
+            resolveExpr(indexAssign.expression);
+            indexAssign.slot = declare(indexAssign.identifier);
+        } else if (node instanceof FunctionDecl funcDecl) {
+            Map<String, Integer> enclosing = scope;
+            BitSet enclosingAssigned = assigned;
+            scope = new HashMap<>();
+            assigned = new BitSet();
+            for (String param : funcDecl.parameters) {
+                assigned.set(declare(param));
+            }
+            resolveBlock(funcDecl.body);
+            funcDecl.frameSize = scope.size();
+            scope = enclosing;
+            assigned = enclosingAssigned;
+        } else if (node instanceof FunctionCall funcCall) {
+            resolveExpr(funcCall);
+        } else if (node instanceof ReturnStmt returnStmt) {
+            resolveExpr(returnStmt.value);
+        } else if (node instanceof InputStmt inputStmt) {
+            inputStmt.slot = declare(inputStmt.identifier);
+            assigned.set(inputStmt.slot);
+        }
+    }
+
+    private void resolveExpr(ASTNode node) {
+        if (node instanceof Expression expr) {
+            if (expr.type == TokenType.IDENTIFIER) {
+                expr.slot = declare(expr.value);
+                expr.mayBeUnassigned = !assigned.get(expr.slot);
+            }
+        } else if (node instanceof BinaryExpr binExpr) {
+            resolveExpr(binExpr.left);
+            resolveExpr(binExpr.right);
+        } else if (node instanceof FunctionCall funcCall) {
+            for (ASTNode arg : funcCall.arguments) {
+                resolveExpr(arg);
+            }
+        } else if (node instanceof RangeExpr rangeExpr) {
+            resolveExpr(rangeExpr.start);
+            resolveExpr(rangeExpr.end);
+            resolveExpr(rangeExpr.step);
+        } else if (node instanceof ArrayLiteral array) {
+            for (ASTNode element : array.elements) {
+                resolveExpr(element);
+            }
+        } else if (node instanceof DictLiteral dict) {
+            for (int i = 0; i < dict.keys.size(); i++) {
+                resolveExpr(dict.keys.get(i));
+                resolveExpr(dict.values.get(i));
+            }
+        } else if (node instanceof IndexExpr indexExpr) {
+            resolveExpr(indexExpr.array);
+            resolveExpr(indexExpr.index);
+        }
+    }
+
+    private int declare(String name) {
+        Integer slot = scope.get(name);
+        if (slot == null) {
+            slot = scope.size();
+            scope.put(name, slot);
+        }
+        return slot;
+    }
+}
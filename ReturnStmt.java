@@ -0,0 +1,8 @@
+// Return statement node
+class ReturnStmt extends ASTNode {
+    ASTNode value;
+
+    ReturnStmt(ASTNode value) {
+        this.value = value;
+    }
+}
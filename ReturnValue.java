@@ -0,0 +1,8 @@
+// Return value signal
+class ReturnValue {
+    Object value;
+    
+    ReturnValue(Object value) {
+        this.value = value;
+    }
+}
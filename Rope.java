@@ -0,0 +1,117 @@
+import java.util.*;
+
+// String made by +, not yet flattened. Concatenating makes one node holding
+// both sides, so a loop that grows a string costs O(1) per step instead of
+// copying everything built so far. Leaves are Strings, numbers and other
+// values; numbers are formatted straight into the flattening buffer, so no
+// String is made for them. toString() flattens without recursion, keeps the
+// result and drops the tree; printing, comparing and hashing go through it.
+final class Rope {
+    // Two Strings shorter than this are joined right away; a node would cost more
+    private static final int MIN_LENGTH = 16;
+
+    private Object left;
+    private Object right;
+    private final int lengthHint;  // Exact for Strings and ints; sizes the buffer
+    private String flat;
+
+    private Rope(Object left, Object right, int lengthHint) {
+        this.left = left;
+        this.right = right;
+        this.lengthHint = lengthHint;
+    }
+
+    // left + right, where at least one side is a String or a Rope
+    static Object concat(Object left, Object right) {
+        if (left instanceof String a && right instanceof String b && a.length() + b.length() < MIN_LENGTH) {
+            return a.concat(b);
+        }
+        left = leaf(left);
+        right = leaf(right);
+        long hint = (long) lengthHint(left) + lengthHint(right);
+        return new Rope(left, right, (int) Math.min(hint, Integer.MAX_VALUE - 8));
+    }
+
+    static boolean isText(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    // Ropes as Strings, anything else as it is
+    static Object flatten(Object value) {
+        return value instanceof Rope rope ? rope.toString() : value;
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) {
+            StringBuilder text = new StringBuilder(lengthHint);
+            ArrayDeque<Object> pending = new ArrayDeque<>();
+            Object node = this;
+            while (true) {
+                if (node instanceof Rope rope && rope.flat == null) {
+                    pending.push(rope.right);
+                    node = rope.left;
+                    continue;
+                }
+                append(text, node);
+                if (pending.isEmpty()) {
+                    break;
+                }
+                node = pending.pop();
+            }
+            flat = text.toString();
+            left = null;
+            right = null;
+        }
+        return flat;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Rope rope && toString().equals(rope.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    // Values that can change later, such as arrays, are turned into text now,
+    // as is null, which the ArrayDeque in toString() does not take
+    private static Object leaf(Object value) {
+        if (value instanceof String || value instanceof Rope || value instanceof Integer
+                || value instanceof Double || value instanceof Boolean) {
+            return value;
+        }
+        return String.valueOf(value);
+    }
+
+    private static void append(StringBuilder text, Object leaf) {
+        if (leaf instanceof String string) {
+            text.append(string);
+        } else if (leaf instanceof Integer i) {
+            text.append(i.intValue());
+        } else if (leaf instanceof Double d) {
+            text.append(d.doubleValue());
+        } else if (leaf instanceof Rope rope) {
+            text.append(rope.flat);
+        } else {
+            text.append(((Boolean) leaf).booleanValue());
+        }
+    }
+
+    private static int lengthHint(Object value) {
+        if (value instanceof String string) {
+            return string.length();
+        } else if (value instanceof Rope rope) {
+            return rope.flat != null ? rope.flat.length() : rope.lengthHint;
+        } else if (value instanceof Integer i) {
+            int digits = i < 0 ? 2 : 1;
+            for (int rest = i / 10; rest != 0; rest /= 10) {
+                digits++;
+            }
+            return digits;
+        }
+        return 8;
+    }
+}
@@ -0,0 +1,73 @@
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+// Pulls tokens from a Lexer on demand, so the Parser can consume a source
+// without a token list being built first. Only a few recent tokens are kept.
+// The phae.Lex event runs from construction to EOF, so it also spans the
+// parsing done in between.
+final class StreamingTokens implements TokenSource {
+    private static final int WINDOW = 4;
+
+    private final Lexer lexer;
+    private final TokenType[] types = new TokenType[WINDOW];
+    private final String[] texts = new String[WINDOW];
+    private final Map<String, String> interned = new HashMap<>();
+    private int count = 0;
+    private PhaeEvents.LexEvent event = new PhaeEvents.LexEvent();  // Null once committed
+
+    StreamingTokens(Lexer lexer) {
+        this.lexer = lexer;
+        event.begin();
+    }
+
+    public TokenType type(int index) {
+        fetch(index);
+        return types[index % WINDOW];
+    }
+
+    public String text(int index) {
+        fetch(index);
+        return texts[index % WINDOW];
+    }
+
+    private void fetch(int index) {
+        if (index < count - WINDOW) {
+            throw new IllegalStateException("Token " + index + " is no longer buffered");
+        }
+        while (count <= index) {
+            TokenType type = lexer.nextToken();
+            types[count % WINDOW] = type;
+            texts[count % WINDOW] = text(type);
+            count++;
+            if (type == TokenType.EOF && event != null) {
+                lexed();
+            }
+        }
+    }
+
+    private void lexed() {
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceLength = lexer.tokenEnd;  // EOF sits at the end of the source
+            event.tokenCount = count;
+            event.commit();
+        }
+        event = null;
+    }
+
+    // The lexer window moves on, so text is taken as soon as the token is read
+    private String text(TokenType type) {
+        switch (type) {
+            case NUMBER: case FLOAT: case STRING:
+                return lexer.tokenText();
+            case EOF:
+                return "";
+            case OPERATOR: case ASSIGN: case SEMICOLON: case LEFT_BRACE: case RIGHT_BRACE:
+            case LEFT_PAREN: case RIGHT_PAREN: case COMMA: case LEFT_BRACKET: case RIGHT_BRACKET: case COLON:
+                return TokenStream.punctuation(lexer.tokenFirstChar(), lexer.tokenEnd - lexer.tokenStart);
+            default:
+                return interned.computeIfAbsent(lexer.tokenText(), text -> text);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+class Token {
+    TokenType type;
+    String value;
+
+    Token(TokenType type, String value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    public String toString() {
+        return "(" + type + ", " + value + ")";
+    }
+}
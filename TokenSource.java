@@ -0,0 +1,11 @@
+// Where the Parser reads tokens from, by index. The parser only moves forward
+// and never looks more than one token past its position.
+interface TokenSource {
+    TokenType type(int index);
+
+    String text(int index);
+
+    default Token token(int index) {
+        return new Token(type(index), text(index));
+    }
+}
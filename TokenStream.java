@@ -0,0 +1,176 @@
+import java.util.*;
+
+// Compact token stream: token types and source offsets in parallel int arrays
+// over the source text. Token text is only materialized when the parser asks
+// for it; identifiers and keywords are interned and punctuation maps to shared
+// constants, so most tokens never allocate a String.
+final class TokenStream implements TokenSource {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final CharSequence source;
+    private int[] types;
+    private int[] starts;
+    private int[] ends;
+    private int size = 0;
+
+    // Set only for streams built from a list of Tokens
+    private String[] texts;
+
+    private String[] interned = new String[64];
+    private int internedCount = 0;
+
+    TokenStream(CharSequence source, int capacity) {
+        this.source = source;
+        this.types = new int[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+    }
+
+    static TokenStream of(List<Token> tokens) {
+        TokenStream stream = new TokenStream(null, tokens.size());
+        stream.texts = new String[tokens.size()];
+        for (Token token : tokens) {
+            stream.texts[stream.size] = token.value;
+            stream.add(token.type, 0, 0);
+        }
+        return stream;
+    }
+
+    // For STRING tokens the range excludes the quotes
+    void add(TokenType type, int start, int end) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        types[size] = type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public String text(int index) {
+        if (texts != null) {
+            return texts[index];
+        }
+        int start = starts[index];
+        int end = ends[index];
+        switch (TYPES[types[index]]) {
+            case NUMBER: case FLOAT: case STRING:
+                return source.subSequence(start, end).toString();
+            case EOF:
+                return "";
+            case OPERATOR: case ASSIGN: case SEMICOLON: case LEFT_BRACE: case RIGHT_BRACE:
+            case LEFT_PAREN: case RIGHT_PAREN: case COMMA: case LEFT_BRACKET: case RIGHT_BRACKET: case COLON:
+                return punctuation(start, end);
+            default:
+                return intern(start, end);
+        }
+    }
+
+    List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+
+    private String punctuation(int start, int end) {
+        String text = punctuation(source.charAt(start), end - start);
+        return text != null ? text : source.subSequence(start, end).toString();
+    }
+
+    // Shared text for operator and punctuation tokens
+    static String punctuation(char first, int length) {
+        if (length == 2) {
+            switch (first) {
+                case '=': return "==";
+                case '>': return ">=";
+                case '<': return "<=";
+                case '!': return "!=";
+            }
+        }
+        switch (first) {
+            case '=': return "=";
+            case '>': return ">";
+            case '<': return "<";
+            case '+': return "+";
+            case '-': return "-";
+            case '*': return "*";
+            case '/': return "/";
+            case '%': return "%";
+            case ';': return ";";
+            case '(': return "(";
+            case ')': return ")";
+            case '{': return "{";
+            case '}': return "}";
+            case ',': return ",";
+            case '[': return "[";
+            case ']': return "]";
+            case ':': return ":";
+            default: return null;
+        }
+    }
+
+    // Open-addressing intern table keyed on the source characters, so looking
+    // up an identifier that was seen before allocates nothing
+    private String intern(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int mask = interned.length - 1;
+        int slot = hash & mask;
+        while (interned[slot] != null) {
+            String candidate = interned[slot];
+            if (candidate.hashCode() == hash && matches(candidate, start, end)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String text = source.subSequence(start, end).toString();
+        interned[slot] = text;
+        if (++internedCount * 2 > interned.length) {
+            rehash();
+        }
+        return text;
+    }
+
+    private boolean matches(String candidate, int start, int end) {
+        if (candidate.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        String[] old = interned;
+        interned = new String[old.length * 2];
+        int mask = interned.length - 1;
+        for (String text : old) {
+            if (text != null) {
+                int slot = text.hashCode() & mask;
+                while (interned[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                interned[slot] = text;
+            }
+        }
+    }
+}
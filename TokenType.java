@@ -0,0 +1,7 @@
+// Token class
+enum TokenType { 
+    WOW, IDENTIFIER, NUMBER, FLOAT, STRING, IF, ELSE, WHILE, PRINT, FOR, IN, RANGE,
+    OPERATOR, ASSIGN, SEMICOLON, LEFT_BRACE, RIGHT_BRACE, 
+    LEFT_PAREN, RIGHT_PAREN, COMMA, EOF, FUNCTION, RETURN, INPUT,
+    LEFT_BRACKET, RIGHT_BRACKET, COLON
+}
@@ -0,0 +1,156 @@
+import java.util.*;
+
+// Operator semantics shared by every execution engine. An int operand is
+// widened when the other side is a double; arithmetic results are doubles.
+// + with a string on either side concatenates, building a Rope.
+final class Values {
+    private Values() {}
+
+    // Held by a frame slot until its variable is first assigned. Only reads
+    // the Resolver marks mayBeUnassigned can see it; null is a real value.
+    static final Object UNASSIGNED = new Object() {
+        @Override
+        public String toString() {
+            return "<unassigned>";
+        }
+    };
+
+    // A frame with every slot unassigned; callers store the parameters
+    static Object[] newFrame(int size) {
+        Object[] frame = new Object[size];
+        Arrays.fill(frame, UNASSIGNED);
+        return frame;
+    }
+
+    // The value of a marked read of the variable name
+    static Object checkAssigned(Object value, String name) {
+        if (value == UNASSIGNED) {
+            throw new RuntimeException("Undefined variable: " + name);
+        }
+        return value;
+    }
+
+    static Object add(Object left, Object right) {
+        if (Rope.isText(left) || Rope.isText(right)) {
+            return Rope.concat(left, right);
+        }
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left + (Double) right) 
+            : ((Integer) left + (Integer) right);
+    }
+
+    static Object subtract(Object left, Object right) {
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left - (Double) right) 
+            : ((Integer) left - (Integer) right);
+    }
+
+    static Object multiply(Object left, Object right) {
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left * (Double) right) 
+            : ((Integer) left * (Integer) right);
+    }
+
+    static Object divide(Object left, Object right) {
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        if ((right instanceof Integer && (Integer) right == 0) || (right instanceof Double && (Double) right == 0.0)) {
+            throw new RuntimeException("Division by zero");
+        }
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left / (Double) right) 
+            : ((Integer) left / (Integer) right);
+    }
+
+    static Object modulo(Object left, Object right) {
+        if (left instanceof Double || right instanceof Double) {
+            throw new RuntimeException("Modulo operator is not supported for floating-point numbers");
+        }
+        return (Integer) left % (Integer) right;
+    }
+
+    static boolean equal(Object left, Object right) {
+        left = Rope.flatten(left);
+        right = Rope.flatten(right);
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        if (left == null && right == null) return true;
+        if (left == null || right == null) return false;
+        return left.equals(right);
+    }
+
+    static boolean greater(Object left, Object right) {
+        if (Rope.isText(left) || Rope.isText(right)) {
+            return compareText(left, right, ">") > 0;
+        }
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left > (Double) right) 
+            : ((Integer) left > (Integer) right);
+    }
+
+    static boolean less(Object left, Object right) {
+        if (Rope.isText(left) || Rope.isText(right)) {
+            return compareText(left, right, "<") < 0;
+        }
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left < (Double) right) 
+            : ((Integer) left < (Integer) right);
+    }
+
+    static boolean greaterOrEqual(Object left, Object right) {
+        if (Rope.isText(left) || Rope.isText(right)) {
+            return compareText(left, right, ">=") >= 0;
+        }
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left >= (Double) right) 
+            : ((Integer) left >= (Integer) right);
+    }
+
+    static boolean lessOrEqual(Object left, Object right) {
+        if (Rope.isText(left) || Rope.isText(right)) {
+            return compareText(left, right, "<=") <= 0;
+        }
+        if (left instanceof Integer && right instanceof Double) left = ((Integer) left).doubleValue();
+        if (left instanceof Double && right instanceof Integer) right = ((Integer) right).doubleValue();
+        return (left instanceof Double || right instanceof Double) 
+            ? ((Double) left <= (Double) right) 
+            : ((Integer) left <= (Integer) right);
+    }
+
+    // Strings, and ropes as their text, compare in String.compareTo order;
+    // a string against anything else is an error
+    private static int compareText(Object left, Object right, String operator) {
+        left = Rope.flatten(left);
+        right = Rope.flatten(right);
+        if (left instanceof String a && right instanceof String b) {
+            return a.compareTo(b);
+        }
+        throw new RuntimeException("Cannot compare " + PhaeArray.typeName(left) + " and "
+                                   + PhaeArray.typeName(right) + " with " + operator);
+    }
+
+    static boolean isTrue(Object obj) {
+        if (obj instanceof Boolean) {
+            return (Boolean)obj;
+        } else if (obj instanceof Integer) {
+            return (Integer)obj != 0;
+        } else if (obj instanceof String) {
+            return !((String)obj).isEmpty();
+        } else if (obj instanceof Rope) {
+            return !obj.toString().isEmpty();
+        }
+        return false;
+    }
+}
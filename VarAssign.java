@@ -0,0 +1,11 @@
+// variable assignment node
+class VarAssign extends ASTNode {
+    String identifier;
+    ASTNode expression;
+    int slot = -1;
+
+    VarAssign(String identifier, ASTNode expression) {
+        this.identifier = identifier;
+        this.expression = expression;
+    }
+}
@@ -0,0 +1,12 @@
+import java.util.*;
+
+// while loop node
+class WhileLoop extends ASTNode {
+    ASTNode condition;
+    List<ASTNode> body;
+
+    WhileLoop(ASTNode condition, List<ASTNode> body) {
+        this.condition = condition;
+        this.body = body;
+    }
+}